@@ -33,6 +33,7 @@ import com.intellij.psi.*;
 import com.intellij.psi.util.ClassUtil;
 import com.intellij.psi.util.PsiFormatUtil;
 import com.intellij.psi.util.PsiUtilCore;
+import com.intellij.util.SmartList;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -377,7 +378,7 @@ public class RefClassImpl extends RefJavaElementImpl implements RefClass {
 
   private void addConstructor(RefMethod refConstructor) {
     if (myConstructors == null){
-      myConstructors = new ArrayList<RefMethod>(1);
+      myConstructors = new SmartList<RefMethod>();
     }
     myConstructors.add(refConstructor);
   }
@@ -225,7 +225,7 @@ public class RefMethodImpl extends RefJavaElementImpl implements RefMethod {
   public void addSuperMethod(RefMethodImpl refSuperMethod) {
     if (!getSuperMethods().contains(refSuperMethod) && !refSuperMethod.getSuperMethods().contains(this)) {
       if (mySuperMethods == null){
-        mySuperMethods = new ArrayList<RefMethod>(1);
+        mySuperMethods = new SmartList<RefMethod>();
       }
       mySuperMethods.add(refSuperMethod);
     }
@@ -234,7 +234,7 @@ public class RefMethodImpl extends RefJavaElementImpl implements RefMethod {
   public void markExtended(RefMethodImpl method) {
     if (!getDerivedMethods().contains(method) && !method.getDerivedMethods().contains(this)) {
       if (myDerivedMethods == null) {
-        myDerivedMethods = new ArrayList<RefMethod>(1);
+        myDerivedMethods = new SmartList<RefMethod>();
       }
       myDerivedMethods.add(method);
     }
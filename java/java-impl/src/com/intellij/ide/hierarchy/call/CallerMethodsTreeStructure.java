@@ -29,12 +29,17 @@ import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.HashMap;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public final class CallerMethodsTreeStructure extends HierarchyTreeStructure {
   private final String myScopeType;
+  // references to the methods searched so far; deepest super methods and recursive calls are shared by many nodes
+  private final Map<PsiMethod, List<PsiReference>> myReferences = new HashMap<PsiMethod, List<PsiReference>>();
+  private long myReferencesModificationCount = -1;
 
   /**
    * Should be called in read action
@@ -64,7 +69,7 @@ public final class CallerMethodsTreeStructure extends HierarchyTreeStructure {
 
     final Map<PsiMember, CallHierarchyNodeDescriptor> methodToDescriptorMap = new HashMap<PsiMember, CallHierarchyNodeDescriptor>();
     for (final PsiMethod methodToFind : methodsToFind) {
-      MethodReferencesSearch.search(methodToFind, searchScope, true).forEach(new Processor<PsiReference>() {
+      processReferences(methodToFind, searchScope, new Processor<PsiReference>() {
         @Override
         public boolean process(final PsiReference reference) {
           if (reference instanceof PsiReferenceExpression) {
@@ -134,6 +139,41 @@ public final class CallerMethodsTreeStructure extends HierarchyTreeStructure {
     return methodToDescriptorMap.values().toArray(new Object[methodToDescriptorMap.size()]);
   }
 
+  private void processReferences(@NotNull PsiMethod method, @NotNull SearchScope searchScope, @NotNull final Processor<PsiReference> processor) {
+    long modificationCount = PsiManager.getInstance(myProject).getModificationTracker().getModificationCount();
+    List<PsiReference> cached;
+    synchronized (myReferences) {
+      if (myReferencesModificationCount != modificationCount) {
+        myReferences.clear();
+        myReferencesModificationCount = modificationCount;
+      }
+      cached = myReferences.get(method);
+    }
+    if (cached != null) {
+      ContainerUtil.process(cached, processor);
+      return;
+    }
+
+    // the references are passed on as they are found and only kept if the search completes
+    final List<PsiReference> references = new ArrayList<PsiReference>();
+    boolean completed = MethodReferencesSearch.search(method, searchScope, true).forEach(new Processor<PsiReference>() {
+      @Override
+      public boolean process(PsiReference reference) {
+        synchronized (references) {
+          references.add(reference);
+        }
+        return processor.process(reference);
+      }
+    });
+    if (completed) {
+      synchronized (myReferences) {
+        if (myReferencesModificationCount == modificationCount) {
+          myReferences.put(method, references);
+        }
+      }
+    }
+  }
+
   @Override
   public boolean isAlwaysShowPlus() {
     return true;
@@ -17,8 +17,11 @@ package com.intellij.psi.impl.search;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
@@ -30,7 +33,13 @@ import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.psi.search.searches.AllClassesSearch;
 import com.intellij.psi.search.searches.DirectClassInheritorsSearch;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiUtil;
+import com.intellij.util.CachedValueBase;
+import com.intellij.util.CommonProcessors;
 import com.intellij.util.Processor;
 import com.intellij.util.QueryExecutor;
 import com.intellij.util.containers.ContainerUtil;
@@ -46,10 +55,14 @@ import java.util.Map;
  * @author max
  */
 public class JavaDirectInheritorsSearcher implements QueryExecutor<PsiClass, DirectClassInheritorsSearch.SearchParameters> {
+  private static final Key<CachedValue<PsiClass[]>> INHERITORS = Key.create("JAVA_DIRECT_INHERITORS");
+  private static final Key<CachedValue<PsiClass[]>> INHERITORS_WITH_ANONYMOUS = Key.create("JAVA_DIRECT_INHERITORS_WITH_ANONYMOUS");
+  private static final Key<CachedValue<PsiClass[]>> CHECKED_INHERITORS = Key.create("JAVA_CHECKED_DIRECT_INHERITORS");
+  private static final Key<CachedValue<PsiClass[]>> CHECKED_INHERITORS_WITH_ANONYMOUS = Key.create("JAVA_CHECKED_DIRECT_INHERITORS_WITH_ANONYMOUS");
+
   @Override
   public boolean execute(@NotNull final DirectClassInheritorsSearch.SearchParameters p, @NotNull final Processor<PsiClass> consumer) {
     final PsiClass aClass = p.getClassToProcess();
-    final PsiManagerImpl psiManager = (PsiManagerImpl)aClass.getManager();
 
     final SearchScope useScope = ApplicationManager.getApplication().runReadAction(new Computable<SearchScope>() {
       @Override
@@ -90,6 +103,79 @@ public class JavaDirectInheritorsSearcher implements QueryExecutor<PsiClass, Dir
       });
     }
 
+    return processInheritorsCached(aClass, useScope, p.isCheckInheritance(), p.includeAnonymous(), consumer);
+  }
+
+  /**
+   * Direct inheritors of a class are cached until the next change of Java structure (or of any code, when anonymous classes
+   * are requested, since they live in code blocks, so with the default search parameters any typing drops the cache) or of
+   * project roots. The cached value is soft-referenced, so the PSI of the inheritors doesn't stay in memory because of it.
+   * On a cache miss the inheritors are passed to the consumer as soon as they are found, each in its own short read action,
+   * and only the searches which have not been stopped by the consumer are cached, so a consumer looking for the first inheritor
+   * doesn't make the whole hierarchy of a widely implemented interface resolve after every change.
+   */
+  private static boolean processInheritorsCached(@NotNull final PsiClass aClass,
+                                                 @NotNull final SearchScope useScope,
+                                                 final boolean checkInheritance,
+                                                 final boolean includeAnonymous,
+                                                 @NotNull final Processor<PsiClass> consumer) {
+    Key<CachedValue<PsiClass[]>> key = checkInheritance
+                                       ? includeAnonymous ? CHECKED_INHERITORS_WITH_ANONYMOUS : CHECKED_INHERITORS
+                                       : includeAnonymous ? INHERITORS_WITH_ANONYMOUS : INHERITORS;
+    CachedValue<PsiClass[]> cached = aClass.getUserData(key);
+    if (cached != null && cached.hasUpToDateValue()) {
+      return ContainerUtil.process(cached.getValue(), consumer);
+    }
+
+    final Project project = aClass.getProject();
+    final PsiModificationTracker tracker = PsiManager.getInstance(project).getModificationTracker();
+    final ProjectRootManager rootManager = ProjectRootManager.getInstance(project);
+    // taken before the search, so that a change made meanwhile leaves the result uncached
+    long psiModificationCount = getPsiModificationCount(tracker, includeAnonymous);
+    long rootModificationCount = rootManager.getModificationCount();
+
+    final List<PsiClass> found = new ArrayList<PsiClass>();
+    boolean completed = processInheritors(aClass, useScope, checkInheritance, includeAnonymous, new Processor<PsiClass>() {
+      @Override
+      public boolean process(PsiClass inheritor) {
+        found.add(inheritor);
+        return consumer.process(inheritor);
+      }
+    });
+    if (completed &&
+        psiModificationCount == getPsiModificationCount(tracker, includeAnonymous) &&
+        rootModificationCount == rootManager.getModificationCount()) {
+      final Object psiDependency = includeAnonymous
+                                   ? PsiModificationTracker.MODIFICATION_COUNT
+                                   : PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT;
+      CachedValue<PsiClass[]> value = CachedValuesManager.getManager(project).createCachedValue(new CachedValueProvider<PsiClass[]>() {
+        @Override
+        public Result<PsiClass[]> compute() {
+          List<PsiClass> inheritors = new ArrayList<PsiClass>();
+          processInheritors(aClass, useScope, checkInheritance, includeAnonymous, new CommonProcessors.CollectProcessor<PsiClass>(inheritors));
+          return Result.create(inheritors.toArray(new PsiClass[inheritors.size()]), psiDependency, rootManager);
+        }
+      }, false);
+      if (value instanceof CachedValueBase) {
+        // the search has just been done, so the value is set directly instead of being computed by the provider again
+        ((CachedValueBase<PsiClass[]>)value).setValue(
+          CachedValueProvider.Result.create(found.toArray(new PsiClass[found.size()]), psiDependency, rootManager));
+        aClass.putUserData(key, value);
+      }
+    }
+    return completed;
+  }
+
+  private static long getPsiModificationCount(@NotNull PsiModificationTracker tracker, boolean includeAnonymous) {
+    return includeAnonymous ? tracker.getModificationCount() : tracker.getOutOfCodeBlockModificationCount();
+  }
+
+  private static boolean processInheritors(@NotNull final PsiClass aClass,
+                                           @NotNull SearchScope useScope,
+                                           boolean checkInheritance,
+                                           boolean includeAnonymous,
+                                           @NotNull Processor<PsiClass> consumer) {
+    final PsiManagerImpl psiManager = (PsiManagerImpl)aClass.getManager();
     final GlobalSearchScope scope = useScope instanceof GlobalSearchScope ? (GlobalSearchScope)useScope : new EverythingGlobalScope(psiManager.getProject());
     final String searchKey = ApplicationManager.getApplication().runReadAction(new Computable<String>() {
       @Override
@@ -113,7 +199,7 @@ public class JavaDirectInheritorsSearcher implements QueryExecutor<PsiClass, Dir
     for (PsiReferenceList referenceList : candidates) {
       ProgressIndicatorProvider.checkCanceled();
       final PsiClass candidate = (PsiClass)referenceList.getParent();
-      if (!checkInheritance(p, aClass, candidate)) continue;
+      if (!checkInheritance(checkInheritance, aClass, candidate)) continue;
 
       String fqn = ApplicationManager.getApplication().runReadAction(new Computable<String>() {
         @Override
@@ -133,7 +219,7 @@ public class JavaDirectInheritorsSearcher implements QueryExecutor<PsiClass, Dir
       if (!processSameNamedClasses(consumer, aClass, sameNamedClasses)) return false;
     }
 
-    if (p.includeAnonymous()) {
+    if (includeAnonymous) {
       Collection<PsiAnonymousClass> anonymousCandidates = ApplicationManager.getApplication().runReadAction(new Computable<Collection<PsiAnonymousClass>>() {
         @Override
         public Collection<PsiAnonymousClass> compute() {
@@ -143,7 +229,7 @@ public class JavaDirectInheritorsSearcher implements QueryExecutor<PsiClass, Dir
 
       for (PsiAnonymousClass candidate : anonymousCandidates) {
         ProgressIndicatorProvider.checkCanceled();
-        if (!checkInheritance(p, aClass, candidate)) continue;
+        if (!checkInheritance(checkInheritance, aClass, candidate)) continue;
 
         if (!consumer.process(candidate)) return false;
       }
@@ -176,11 +262,11 @@ public class JavaDirectInheritorsSearcher implements QueryExecutor<PsiClass, Dir
     return true;
   }
 
-  private static boolean checkInheritance(final DirectClassInheritorsSearch.SearchParameters p, final PsiClass aClass, final PsiClass candidate) {
+  private static boolean checkInheritance(final boolean checkInheritance, final PsiClass aClass, final PsiClass candidate) {
     return ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
       @Override
       public Boolean compute() {
-        return !p.isCheckInheritance() || candidate.isInheritor(aClass, false);
+        return !checkInheritance || candidate.isInheritor(aClass, false);
       }
     });
   }
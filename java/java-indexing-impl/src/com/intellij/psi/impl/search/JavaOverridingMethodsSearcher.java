@@ -1,6 +1,9 @@
 package com.intellij.psi.impl.search;
 
+import com.intellij.concurrency.JobLauncher;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import com.intellij.openapi.util.Computable;
 import com.intellij.psi.*;
 import com.intellij.psi.search.SearchScope;
@@ -14,10 +17,16 @@ import com.intellij.util.QueryExecutor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author max
  */
 public class JavaOverridingMethodsSearcher implements QueryExecutor<PsiMethod, OverridingMethodsSearch.SearchParameters> {
+  private static final int FIRST_BATCH_SIZE = 4;
+  private static final int MAX_BATCH_SIZE = 256;
+
   @Override
   public boolean execute(@NotNull final OverridingMethodsSearch.SearchParameters p, @NotNull final Processor<PsiMethod> consumer) {
     final PsiMethod method = p.getMethod();
@@ -31,21 +40,60 @@ public class JavaOverridingMethodsSearcher implements QueryExecutor<PsiMethod, O
       }
     });
     assert parentClass != null;
+
+    final List<PsiClass> batch = new ArrayList<PsiClass>();
+    final int[] batchSize = {FIRST_BATCH_SIZE};
     Processor<PsiClass> inheritorsProcessor = new Processor<PsiClass>() {
       @Override
       public boolean process(final PsiClass inheritor) {
-        PsiMethod found = ApplicationManager.getApplication().runReadAction(new Computable<PsiMethod>() {
-          @Override
-          @Nullable
-          public PsiMethod compute() {
-            return findOverridingMethod(inheritor, parentClass, method);
-          }
-        });
-        return found == null || consumer.process(found) && p.isCheckDeep();
+        batch.add(inheritor);
+        if (batch.size() < batchSize[0]) return true;
+        batchSize[0] = Math.min(batchSize[0] * 2, MAX_BATCH_SIZE);
+        return processBatch(batch, parentClass, method, p.isCheckDeep(), consumer);
       }
     };
 
-    return ClassInheritorsSearch.search(parentClass, scope, true).forEach(inheritorsProcessor);
+    return ClassInheritorsSearch.search(parentClass, scope, true).forEach(inheritorsProcessor) &&
+           processBatch(batch, parentClass, method, p.isCheckDeep(), consumer);
+  }
+
+  /**
+   * Looks for the overriding methods in the inheritors of the batch concurrently and passes them to the consumer
+   * in the order of the inheritors, so that the results are the same as of the sequential search.
+   * The batches grow from {@link #FIRST_BATCH_SIZE} to let the first results appear early.
+   */
+  private static boolean processBatch(@NotNull final List<PsiClass> batch,
+                                      @NotNull final PsiClass parentClass,
+                                      @NotNull final PsiMethod method,
+                                      boolean checkDeep,
+                                      @NotNull Processor<PsiMethod> consumer) {
+    if (batch.isEmpty()) return true;
+    final PsiMethod[] found = new PsiMethod[batch.size()];
+    List<Integer> indices = new ArrayList<Integer>(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      indices.add(i);
+    }
+    boolean completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(
+      indices, ProgressIndicatorProvider.getGlobalProgressIndicator(), false, new Processor<Integer>() {
+        @Override
+        public boolean process(final Integer index) {
+          found[index] = ApplicationManager.getApplication().runReadAction(new Computable<PsiMethod>() {
+            @Override
+            @Nullable
+            public PsiMethod compute() {
+              return findOverridingMethod(batch.get(index), parentClass, method);
+            }
+          });
+          return true;
+        }
+      });
+    batch.clear();
+    if (!completed) throw new ProcessCanceledException();
+
+    for (PsiMethod overriding : found) {
+      if (overriding != null && !(consumer.process(overriding) && checkDeep)) return false;
+    }
+    return true;
   }
 
   @Nullable
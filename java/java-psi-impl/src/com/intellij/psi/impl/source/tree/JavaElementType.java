@@ -137,7 +137,8 @@ public interface JavaElementType {
   IElementType ASSERT_STATEMENT = new JavaCompositeElementType("ASSERT_STATEMENT", PsiAssertStatementImpl.class);
   IElementType ANNOTATION_ARRAY_INITIALIZER = new JavaCompositeElementType("ANNOTATION_ARRAY_INITIALIZER", PsiArrayInitializerMemberValueImpl.class);
 
-  class ICodeBlockElementType extends IErrorCounterReparseableElementType implements ICompositeElementType, ILightLazyParseableElementType {
+  class ICodeBlockElementType extends IErrorCounterReparseableElementType
+    implements ICompositeElementType, ILightLazyParseableElementType, IConcurrentlyParseableElementType {
     private ICodeBlockElementType() {
       super("CODE_BLOCK", JavaLanguage.INSTANCE);
     }
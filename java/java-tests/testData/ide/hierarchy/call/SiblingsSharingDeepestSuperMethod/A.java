@@ -0,0 +1,15 @@
+class A {
+  void all(B b, C c, D d) {
+    b.xyzzy();
+    c.xyzzy();
+    d.xyzzy();
+  }
+
+  void onlyC(C c) {
+    c.xyzzy();
+  }
+
+  void onlyD(D d) {
+    d.xyzzy();
+  }
+}
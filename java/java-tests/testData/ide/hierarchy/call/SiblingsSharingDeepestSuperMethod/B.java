@@ -0,0 +1,4 @@
+class B {
+  public void xyzzy() {
+  }
+}
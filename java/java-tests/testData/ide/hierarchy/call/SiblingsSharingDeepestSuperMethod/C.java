@@ -0,0 +1,5 @@
+class C extends B {
+  public void xyzzy() {
+    E.target();
+  }
+}
@@ -0,0 +1,5 @@
+class D extends B {
+  public void xyzzy() {
+    E.target();
+  }
+}
@@ -0,0 +1,4 @@
+class E {
+  static void target() {
+  }
+}
@@ -0,0 +1,6 @@
+public class Calls {
+  void a() { c(); b(); }
+  void b() { c(); }
+  void d() { c(); }
+  void c() {}
+}
@@ -0,0 +1,4 @@
+package pack1;
+
+public class Base {
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.completion;
+
+import com.intellij.codeInsight.completion.impl.CompletionLatencyStatistics;
+import com.intellij.codeInsight.lookup.LookupManager;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+
+import java.util.List;
+
+public class CompletionLatencyStatisticsTest extends LightFixtureCompletionTestCase {
+  private static final String TEXT = "class A { void foo(String s) { s.<caret> } }";
+
+  public void testContributorTimeIsRecorded() {
+    CompletionLatencyStatistics statistics = CompletionLatencyStatistics.getInstance();
+    statistics.clear();
+
+    myFixture.configureByText("A.java", TEXT);
+    complete();
+
+    String name = JavaCompletionContributor.class.getSimpleName();
+    assertTrue(statistics.dump(), statistics.getSampleCount(name) > 0);
+    assertTrue(statistics.getPercentile(name, 0.5) >= 0);
+    assertEquals(-1, statistics.getPercentile("NoSuchContributor", 0.5));
+  }
+
+  public void testConcurrentContributorsGiveSameItemsInSameOrder() {
+    myFixture.configureByText("A.java", TEXT);
+    complete();
+    List<String> sequential = myFixture.getLookupElementStrings();
+    assertNotNull(sequential);
+    LookupManager.getInstance(getProject()).hideActiveLookup();
+
+    RegistryValue concurrent = Registry.get("completion.concurrent.contributors");
+    boolean old = concurrent.asBoolean();
+    concurrent.setValue(true);
+    try {
+      myFixture.configureByText("A.java", TEXT);
+      complete();
+      assertOrderedEquals(myFixture.getLookupElementStrings(), sequential);
+    }
+    finally {
+      concurrent.setValue(old);
+    }
+  }
+}
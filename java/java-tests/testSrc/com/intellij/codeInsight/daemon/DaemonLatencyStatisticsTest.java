@@ -0,0 +1,110 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.daemon;
+
+import com.intellij.codeHighlighting.Pass;
+import com.intellij.codeInsight.daemon.impl.*;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.ex.RangeHighlighterEx;
+import com.intellij.openapi.editor.impl.DocumentMarkupModel;
+import com.intellij.openapi.editor.markup.HighlighterLayer;
+import com.intellij.openapi.editor.markup.MarkupModel;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+
+import java.util.*;
+
+public class DaemonLatencyStatisticsTest extends LightDaemonAnalyzerTestCase {
+  private static final String PASS_NAME = GeneralHighlightingPass.class.getSimpleName();
+
+  public void testLatencyIsRecordedOncePerChange() throws Exception {
+    configureFromFileText("A.java", "class A { <caret> }");
+    doHighlighting();
+    DaemonLatencyStatistics statistics = DaemonLatencyStatistics.getInstance();
+    statistics.clear();
+
+    type("int i;");
+    doHighlighting();
+    assertEquals(statistics.dump(), 1, statistics.getSampleCount(PASS_NAME));
+    long median = statistics.getPercentile(PASS_NAME, 0.5);
+    assertTrue(median >= 0);
+    assertTrue(statistics.getPercentile(PASS_NAME, 1) >= median);
+
+    doHighlighting();
+    assertEquals(1, statistics.getSampleCount(PASS_NAME));
+    assertEquals(-1, statistics.getPercentile("NoSuchPass", 0.5));
+  }
+
+  public void testErrorHighlightersAreReusedWhenNothingChanged() throws Exception {
+    configureFromFileText("A.java", "class A { void f() { int i = <caret>; } }");
+    assertOneElement(highlightErrors());
+    RangeHighlighter highlighter = findErrorHighlighter();
+
+    DaemonLatencyStatistics statistics = DaemonLatencyStatistics.getInstance();
+    statistics.clear();
+    assertOneElement(highlightErrors());
+    assertSame(highlighter, findErrorHighlighter());
+    assertTrue(highlighter.isValid());
+    assertTrue(statistics.dump(), statistics.getSampleCount(DaemonLatencyStatistics.MARKUP_UPDATE) > 0);
+  }
+
+  public void testHighlightersAtEqualRangesKeepTheirInfos() throws Exception {
+    configureFromFileText("A.java", "class A { }");
+    List<String> descriptions = Arrays.asList("a", "b", "c", "d", "e");
+    Map<String, RangeHighlighter> before = setInfos(descriptions);
+    assertEquals(descriptions.size(), before.size());
+
+    // whatever the order of the old highlighters, dropping one in the middle shifts them against the new infos
+    // unless the highlighter with the same info is looked up
+    Map<String, RangeHighlighter> after = setInfos(Arrays.asList("a", "b", "d", "e"));
+    assertEquals(4, after.size());
+    for (String description : after.keySet()) {
+      assertSame(description, before.get(description), after.get(description));
+    }
+    assertFalse(before.get("c").isValid());
+  }
+
+  private Map<String, RangeHighlighter> setInfos(List<String> descriptions) {
+    List<HighlightInfo> infos = new ArrayList<HighlightInfo>();
+    for (String description : descriptions) {
+      infos.add(HighlightInfo.newHighlightInfo(HighlightInfoType.INFORMATION).range(0, 5).descriptionAndTooltip(description).create());
+    }
+    Document document = getEditor().getDocument();
+    UpdateHighlightersUtil.setHighlightersToEditor(getProject(), document, 0, document.getTextLength(), infos, null, Pass.UPDATE_ALL);
+
+    Map<String, RangeHighlighter> result = new HashMap<String, RangeHighlighter>();
+    MarkupModel markup = DocumentMarkupModel.forDocument(document, getProject(), true);
+    for (RangeHighlighter highlighter : markup.getAllHighlighters()) {
+      Object tooltip = ((RangeHighlighterEx)highlighter).getErrorStripeTooltip();
+      if (tooltip instanceof HighlightInfo) {
+        assertNull(result.put(((HighlightInfo)tooltip).getDescription(), highlighter));
+      }
+    }
+    return result;
+  }
+
+  private RangeHighlighter findErrorHighlighter() {
+    MarkupModel markup = DocumentMarkupModel.forDocument(getEditor().getDocument(), getProject(), true);
+    RangeHighlighter result = null;
+    for (RangeHighlighter highlighter : markup.getAllHighlighters()) {
+      if (highlighter.getLayer() == HighlighterLayer.ERROR) {
+        assertNull(result);
+        result = highlighter;
+      }
+    }
+    assertNotNull(result);
+    return result;
+  }
+}
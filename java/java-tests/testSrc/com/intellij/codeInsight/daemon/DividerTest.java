@@ -0,0 +1,113 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.daemon;
+
+import com.intellij.codeInsight.daemon.impl.Divider;
+import com.intellij.openapi.util.Conditions;
+import com.intellij.openapi.util.ProperTextRange;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+public class DividerTest extends LightCodeInsightTestCase {
+  public void testSortByDistanceKeepsDescendantsFirstAndStartsNearTheRange() throws Exception {
+    configureFromFileText("A.java", "class A {\n" +
+                                    "  void a() { int a = 1; }\n" +
+                                    "  void b() { int b = 2; }\n" +
+                                    "  void c() { int c = 3; }\n" +
+                                    "  void d() { int d = 4; }\n" +
+                                    "}");
+    PsiFile file = getFile();
+    int start = file.getText().indexOf("void d");
+    TextRange range = new TextRange(start, file.getText().indexOf('}', start) + 1);
+
+    List<PsiElement> outside = new ArrayList<PsiElement>();
+    List<ProperTextRange> outsideRanges = new ArrayList<ProperTextRange>();
+    Divider.divideInsideAndOutside(file, 0, file.getTextLength(), range, new ArrayList<PsiElement>(), new ArrayList<ProperTextRange>(),
+                                   outside, outsideRanges, false, Conditions.<PsiFile>alwaysTrue());
+    List<PsiElement> original = new ArrayList<PsiElement>(outside);
+
+    Divider.sortByDistance(outside, outsideRanges, range);
+
+    assertEquals(new HashSet<PsiElement>(original), new HashSet<PsiElement>(outside));
+    assertEquals(outside.size(), outsideRanges.size());
+    for (int i = 0; i < outside.size(); i++) {
+      assertEquals(outside.get(i).getTextRange(), outsideRanges.get(i));
+      for (int j = i + 1; j < outside.size(); j++) {
+        assertFalse(PsiTreeUtil.isAncestor(outside.get(i), outside.get(j), true));
+      }
+    }
+    int methodC = file.getText().indexOf("void c");
+    int methodA = file.getText().indexOf("void a");
+    assertTrue(indexOfElementAt(outside, methodC) < indexOfElementAt(outside, methodA));
+  }
+
+  public void testSortByDistanceFromCaret() throws Exception {
+    configureFromFileText("A.java", "class A {\n" +
+                                    "  void a() { int a = 1; }\n" +
+                                    "  void b() { int b = 2; }\n" +
+                                    "  void c() { int c = 3; }\n" +
+                                    "  void d() { int d = 4; }\n" +
+                                    "}");
+    PsiFile file = getFile();
+    String text = file.getText();
+    int start = text.indexOf("void b");
+    int end = text.indexOf('}', text.indexOf("void c")) + 1;
+    TextRange range = new TextRange(start, end);
+    int methodA = text.indexOf("void a");
+    int methodD = text.indexOf("void d");
+
+    // a() and d() are equally far from the range, but the caret at the end of it is closer to d()
+    List<PsiElement> outside = divideOutside(file, range);
+    Divider.sortByDistance(outside, new ArrayList<ProperTextRange>(getRanges(outside)), range);
+    assertTrue(indexOfElementAt(outside, methodA) < indexOfElementAt(outside, methodD));
+
+    outside = divideOutside(file, range);
+    List<ProperTextRange> outsideRanges = getRanges(outside);
+    Divider.sortByDistance(outside, outsideRanges, range, new TextRange(end, end));
+    assertTrue(indexOfElementAt(outside, methodD) < indexOfElementAt(outside, methodA));
+    assertEquals(getRanges(outside), outsideRanges);
+  }
+
+  private static List<PsiElement> divideOutside(PsiFile file, TextRange range) {
+    List<PsiElement> outside = new ArrayList<PsiElement>();
+    Divider.divideInsideAndOutside(file, 0, file.getTextLength(), range, new ArrayList<PsiElement>(), new ArrayList<ProperTextRange>(),
+                                   outside, new ArrayList<ProperTextRange>(), false, Conditions.<PsiFile>alwaysTrue());
+    return outside;
+  }
+
+  private static List<ProperTextRange> getRanges(List<PsiElement> elements) {
+    List<ProperTextRange> ranges = new ArrayList<ProperTextRange>(elements.size());
+    for (PsiElement element : elements) {
+      ranges.add(ProperTextRange.create(element.getTextRange()));
+    }
+    return ranges;
+  }
+
+  private static int indexOfElementAt(List<PsiElement> elements, int offset) {
+    for (int i = 0; i < elements.size(); i++) {
+      if (elements.get(i).getTextRange().getStartOffset() == offset) return i;
+    }
+    fail("No element at " + offset);
+    return -1;
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.daemon;
+
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.codeInsight.daemon.impl.LocalInspectionsStatistics;
+import com.intellij.codeInspection.LocalInspectionTool;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+import com.intellij.psi.JavaElementVisitor;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiLiteralExpression;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+public class LocalInspectionsStatisticsTest extends LightDaemonAnalyzerTestCase {
+  private static final String SHORT_NAME = "LiteralsInspection";
+  private long mySpinNanos;
+
+  @NotNull
+  @Override
+  protected LocalInspectionTool[] configureLocalInspectionTools() {
+    return new LocalInspectionTool[]{new LocalInspectionTool() {
+      @Override
+      @Nls
+      @NotNull
+      public String getGroupDisplayName() {
+        return "MyGroup";
+      }
+
+      @Override
+      @Nls
+      @NotNull
+      public String getDisplayName() {
+        return "Literals";
+      }
+
+      @Override
+      @NonNls
+      @NotNull
+      public String getShortName() {
+        return SHORT_NAME;
+      }
+
+      @Override
+      @NotNull
+      public PsiElementVisitor buildVisitor(@NotNull final ProblemsHolder holder, boolean isOnTheFly) {
+        return new JavaElementVisitor() {
+          @Override
+          public void visitLiteralExpression(PsiLiteralExpression expression) {
+            spin(mySpinNanos);
+            holder.registerProblem(expression, "literal");
+          }
+        };
+      }
+    }};
+  }
+
+  public void testToolStatisticsAreCollected() throws Exception {
+    LocalInspectionsStatistics statistics = LocalInspectionsStatistics.getInstance();
+    statistics.clear();
+    configureFromFileText("A.java", "class A { String s = \"a\"; int i = 1; }");
+    doHighlighting();
+
+    LocalInspectionsStatistics.ToolStatistics tool = statistics.get(SHORT_NAME);
+    assertNotNull(statistics.dump(), tool);
+    assertEquals(1, tool.getFileCount());
+    assertEquals(2, tool.getProblemCount());
+    assertTrue(tool.getElementCount() > 0);
+    assertEquals(0, tool.getDeferredCount());
+    assertTrue(statistics.dump().contains(SHORT_NAME + "\t1\t"));
+  }
+
+  public void testToolOverTimeBudgetIsDeferred() throws Exception {
+    LocalInspectionsStatistics statistics = LocalInspectionsStatistics.getInstance();
+    statistics.clear();
+    RegistryValue budget = Registry.get("daemon.local.inspection.time.budget.ms");
+    int old = budget.asInteger();
+    budget.setValue(1);
+    mySpinNanos = 5000000;
+    try {
+      configureFromFileText("A.java", "class A { String s = \"a\"; int i = 1; }");
+      assertEquals(2, highlightLiterals());
+    }
+    finally {
+      mySpinNanos = 0;
+      budget.setValue(old);
+    }
+
+    LocalInspectionsStatistics.ToolStatistics tool = statistics.get(SHORT_NAME);
+    assertNotNull(statistics.dump(), tool);
+    assertEquals(1, tool.getDeferredCount());
+    assertEquals(2, tool.getProblemCount());
+  }
+
+  public void testFusedVisitorsReportTheSameProblems() throws Exception {
+    LocalInspectionsStatistics statistics = LocalInspectionsStatistics.getInstance();
+    statistics.clear();
+    RegistryValue fused = Registry.get("daemon.local.inspection.fused.visitors");
+    boolean old = fused.asBoolean();
+    fused.setValue(true);
+    try {
+      configureFromFileText("A.java", "class A { String s = \"a\"; int i = 1; }");
+      assertEquals(2, highlightLiterals());
+    }
+    finally {
+      fused.setValue(old);
+    }
+
+    LocalInspectionsStatistics.ToolStatistics tool = statistics.get(SHORT_NAME);
+    assertNotNull(statistics.dump(), tool);
+    assertEquals(2, tool.getProblemCount());
+    boolean groupRecorded = false;
+    for (LocalInspectionsStatistics.ToolStatistics group : statistics.getTools()) {
+      groupRecorded |= group.getShortName().startsWith("fused(") && group.getShortName().contains(SHORT_NAME);
+    }
+    assertTrue(statistics.dump(), groupRecorded);
+  }
+
+  private int highlightLiterals() {
+    int count = 0;
+    for (HighlightInfo info : doHighlighting()) {
+      if ("literal".equals(info.getDescription())) count++;
+    }
+    return count;
+  }
+
+  private static void spin(long cpuNanos) {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (cpuNanos == 0 || !threadMXBean.isCurrentThreadCpuTimeSupported()) return;
+    long start = threadMXBean.getCurrentThreadCpuTime();
+    while (threadMXBean.getCurrentThreadCpuTime() - start < cpuNanos) {
+      Thread.yield();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.daemon;
+
+import com.intellij.codeInsight.problems.MockWolfTheProblemSolver;
+import com.intellij.codeInsight.problems.WolfTheProblemSolverImpl;
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.util.Conditions;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.problems.WolfTheProblemSolver;
+
+import java.util.List;
+
+public class ProblemSolverChangedDeclarationsTest extends DaemonAnalyzerTestCase {
+  private WolfTheProblemSolverImpl myWolf;
+  private boolean myOldValue;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    RegistryValue value = Registry.get("wolf.check.files.using.changed.declarations");
+    myOldValue = value.asBoolean();
+    value.setValue(true);
+    myWolf = new WolfTheProblemSolverImpl(getProject(), getPsiManager(), VirtualFileManager.getInstance());
+    myWolf.registerFileHighlightFilter(Conditions.<VirtualFile>alwaysTrue(), getTestRootDisposable());
+    ((MockWolfTheProblemSolver)WolfTheProblemSolver.getInstance(getProject())).setDelegate(myWolf);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    ((MockWolfTheProblemSolver)WolfTheProblemSolver.getInstance(getProject())).setDelegate(null);
+    myWolf = null;
+    Registry.get("wolf.check.files.using.changed.declarations").setValue(myOldValue);
+    super.tearDown();
+  }
+
+  public void testChangedMethodSignatureQueuesFilesCallingIt() throws Exception {
+    configureByText(StdFileTypes.JAVA, "class Foo { void bar(<caret>) {} }");
+    VirtualFile user = createClass("class User { void f() { new Foo().bar(); } }").getContainingFile().getVirtualFile();
+    VirtualFile unrelated = createClass("class Unrelated { void g() {} }").getContainingFile().getVirtualFile();
+    highlightErrors();
+
+    type("int i");
+    highlightErrors();
+
+    List<VirtualFile> queue = myWolf.queueFilesUsingChangedDeclarationsAndGetQueue();
+    assertTrue(queue.toString(), queue.contains(user));
+    assertFalse(queue.toString(), queue.contains(unrelated));
+  }
+
+  public void testRenamedMethodQueuesFilesCallingItByTheOldName() throws Exception {
+    configureByText(StdFileTypes.JAVA, "class Foo { void bar<caret>() {} }");
+    VirtualFile user = createClass("class User { void f() { new Foo().bar(); } }").getContainingFile().getVirtualFile();
+    highlightErrors();
+
+    type("2");
+    highlightErrors();
+
+    List<VirtualFile> queue = myWolf.queueFilesUsingChangedDeclarationsAndGetQueue();
+    assertTrue(queue.toString(), queue.contains(user));
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.daemon;
+
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ViewportFirstHighlightingTest extends LightDaemonAnalyzerTestCase {
+  private static final int MIN_LINES = 10;
+
+  public void testHugeFileIsHighlightedAsUsual() throws Exception {
+    String text = createText();
+    List<String> expected = highlight(text, 0);
+    assertFalse(expected.isEmpty());
+
+    // the file is above the threshold, so the elements outside the priority range are visited by their distance from the caret
+    List<String> actual = highlight(text, MIN_LINES);
+    assertTrue(getEditor().getDocument().getLineCount() >= MIN_LINES);
+    assertEquals(expected, actual);
+  }
+
+  private List<String> highlight(String text, int minLines) throws Exception {
+    RegistryValue minLinesValue = Registry.get("daemon.viewport.first.min.lines");
+    RegistryValue marginValue = Registry.get("daemon.viewport.first.margin.lines");
+    int oldMinLines = minLinesValue.asInteger();
+    int oldMargin = marginValue.asInteger();
+    minLinesValue.setValue(String.valueOf(minLines));
+    marginValue.setValue("10");
+    try {
+      configureFromFileText("A.java", text);
+      List<String> result = new ArrayList<String>();
+      for (HighlightInfo info : doHighlighting()) {
+        result.add(info.getStartOffset() + ":" + info.getEndOffset() + " " + info.getSeverity() + " " + info.getDescription());
+      }
+      Collections.sort(result);
+      return result;
+    }
+    finally {
+      minLinesValue.setValue(String.valueOf(oldMinLines));
+      marginValue.setValue(String.valueOf(oldMargin));
+    }
+  }
+
+  // errors and unresolved references spread before and after the caret
+  private static String createText() {
+    StringBuilder text = new StringBuilder("class A {\n");
+    for (int i = 0; i < 40; i++) {
+      if (i == 1) {
+        text.append("  <caret>\n");
+      }
+      text.append("  @Deprecated void m").append(i).append("() {\n")
+        .append("    int i").append(i).append(" = \"").append(i).append("\";\n")
+        .append("    m").append((i + 1) % 40).append("();\n")
+        .append("    Unknown").append(i).append(".call();\n")
+        .append("  }\n");
+    }
+    return text.append("}\n").toString();
+  }
+}
@@ -20,12 +20,18 @@ import com.intellij.analysis.AnalysisScope;
 import com.intellij.codeInsight.CodeInsightTestCase;
 import com.intellij.codeInspection.actions.RunInspectionIntention;
 import com.intellij.codeInspection.ex.*;
+import com.intellij.codeInspection.reference.RefElement;
+import com.intellij.codeInspection.reference.RefElementImpl;
+import com.intellij.codeInspection.reference.RefManagerImpl;
 import com.intellij.codeInspection.ui.InspectionToolPresentation;
 import com.intellij.codeInspection.visibility.VisibilityInspection;
+import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author Dmitry Avdeev
@@ -58,6 +64,31 @@ public class GlobalInspectionContextTest extends CodeInsightTestCase {
     assertEquals(1, presentation.getProblemDescriptors().size());
   }
 
+  public void testReferenceGraphIsKeptWhenTrimmed() throws Exception {
+    configureByFile("Calls.java");
+    GlobalInspectionContextImpl context = ((InspectionManagerEx)InspectionManager.getInstance(getProject())).createNewGlobalContext(false);
+    RefManagerImpl refManager = new RefManagerImpl(getProject(), new AnalysisScope(getFile()), context);
+    try {
+      refManager.findAllDeclarations();
+      PsiClass aClass = ((PsiJavaFile)getFile()).getClasses()[0];
+      RefElement a = refManager.getReference(aClass.findMethodsByName("a", false)[0]);
+      RefElement b = refManager.getReference(aClass.findMethodsByName("b", false)[0]);
+      RefElement c = refManager.getReference(aClass.findMethodsByName("c", false)[0]);
+      RefElement d = refManager.getReference(aClass.findMethodsByName("d", false)[0]);
+      List<RefElement> callers = new ArrayList<RefElement>(c.getInReferences());
+      assertTrue(callers.toString(), callers.containsAll(Arrays.asList(a, b, d)));
+      assertTrue(a.getOutReferences().containsAll(Arrays.asList(b, c)));
+
+      ((RefElementImpl)c).trimReferences();
+      assertEquals(callers, new ArrayList<RefElement>(c.getInReferences()));
+      ((RefElementImpl)c).addInReference(c);
+      assertEquals(callers.size() + 1, c.getInReferences().size());
+    }
+    finally {
+      refManager.cleanup();
+    }
+  }
+
   public void testRunInspectionContext() throws Exception {
     InspectionProfile profile = new InspectionProfileImpl("foo");
     InspectionToolWrapper[] tools = profile.getInspectionTools(null);
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection.ex;
+
+import com.intellij.codeInspection.defUse.DefUseInspection;
+import com.intellij.openapi.application.Result;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.PsiTestCase;
+import com.intellij.util.containers.ContainerUtil;
+
+import java.util.Collections;
+import java.util.Set;
+
+public class InspectionResultCacheTest extends PsiTestCase {
+  private static final Set<String> CLEAN = Collections.singleton("tool");
+
+  public void testChangeOfTransitiveDependencyInvalidatesFile() throws Exception {
+    PsiFile a = createFile("A.java", "class A { B b; }");
+    VirtualFile dir = a.getVirtualFile().getParent();
+    PsiFile b = createFile(myModule, dir, "B.java", "class B { C c; }");
+    PsiFile c = createFile(myModule, dir, "C.java", "class C { }");
+    PsiFile d = createFile(myModule, dir, "D.java", "class D { }");
+
+    InspectionResultCache cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    for (PsiFile file : new PsiFile[]{a, b, c, d}) {
+      cache.update(file, cache.computeState(file), CLEAN);
+    }
+    cache.close();
+
+    cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    assertEquals(CLEAN, cache.getCleanTools(cache.computeState(a)));
+    cache.close();
+
+    setText(c, "class C { int i; }");
+
+    cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    assertEmpty(cache.getCleanTools(cache.computeState(a)));
+    assertEmpty(cache.getCleanTools(cache.computeState(b)));
+    assertEquals(CLEAN, cache.getCleanTools(cache.computeState(d)));
+    cache.close();
+  }
+
+  public void testScopedRunIsReusedByFullRun() throws Exception {
+    PsiFile a = createFile("A.java", "class A { B b; }");
+    PsiFile b = createFile(myModule, a.getVirtualFile().getParent(), "B.java", "class B { }");
+
+    InspectionResultCache cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    cache.update(a, cache.computeState(a), CLEAN);
+    cache.close();
+
+    cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    assertEquals(CLEAN, cache.getCleanTools(cache.computeState(a)));
+    assertEmpty(cache.getCleanTools(cache.computeState(b)));
+    cache.close();
+
+    setText(b, "class B { int i; }");
+
+    cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    assertEmpty(cache.getCleanTools(cache.computeState(a)));
+    cache.close();
+  }
+
+  public void testDependencyInspectedAfterChangeInvalidatesFile() throws Exception {
+    PsiFile a = createFile("A.java", "class A { B b; }");
+    PsiFile b = createFile(myModule, a.getVirtualFile().getParent(), "B.java", "class B { }");
+
+    InspectionResultCache cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    cache.update(a, cache.computeState(a), CLEAN);
+    cache.update(b, cache.computeState(b), CLEAN);
+    cache.close();
+
+    setText(b, "class B { int i; }");
+
+    cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    cache.update(b, cache.computeState(b), CLEAN);
+    cache.close();
+
+    cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    assertEquals(CLEAN, cache.getCleanTools(cache.computeState(b)));
+    assertEmpty(cache.getCleanTools(cache.computeState(a)));
+    cache.close();
+  }
+
+  public void testChangedSettingsChangeToolKey() throws Exception {
+    PsiFile a = createFile("A.java", "class A { }");
+    DefUseInspection tool = new DefUseInspection();
+    DefUseInspection changedTool = new DefUseInspection();
+    changedTool.REPORT_PREFIX_EXPRESSIONS = !tool.REPORT_PREFIX_EXPRESSIONS;
+
+    InspectionResultCache cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    String key = cache.getToolKey(new LocalInspectionToolWrapper(tool));
+    String changedKey = cache.getToolKey(new LocalInspectionToolWrapper(changedTool));
+    assertFalse(key.equals(changedKey));
+
+    cache.update(a, cache.computeState(a), ContainerUtil.newHashSet(key));
+    cache.close();
+
+    cache = InspectionResultCache.open(getProject());
+    assertNotNull(cache);
+    Set<String> cleanTools = cache.getCleanTools(cache.computeState(a));
+    assertTrue(cleanTools.contains(key));
+    assertFalse(cleanTools.contains(changedKey));
+    cache.close();
+  }
+
+  private void setText(final PsiFile file, final String text) {
+    new WriteAction() {
+      @Override
+      protected void run(Result result) throws Throwable {
+        VfsUtil.saveText(file.getVirtualFile(), text);
+      }
+    }.execute();
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+  }
+}
@@ -25,6 +25,8 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ex.PathManagerEx;
 import com.intellij.openapi.fileTypes.FileTypes;
 import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -45,10 +47,7 @@ import com.intellij.util.ThrowableRunnable;
 import com.intellij.util.WaitFor;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 /*
  * @author: MYakovlev
@@ -394,6 +393,59 @@ public class FindManagerTest extends DaemonAnalyzerTestCase {
     assertSize(2, findUsages(findModel));
   }
 
+  public void testParallelFindUsagesReportsUsagesOfFileInOrder() throws Throwable {
+    final int fileCount = 20;
+    final int lineCount = 250; // more than the usages found in one read action
+    TempDirTestFixture fixture = new LightTempDirTestFixtureImpl();
+    fixture.setUp();
+    RegistryValue parallel = Registry.get("find.in.path.parallel");
+    boolean oldParallel = parallel.asBoolean();
+
+    try {
+      String sampleText = StringUtil.repeat("zoo TargetWord foo bar goo\n", lineCount);
+      for (int i = 0; i < fileCount; i++) {
+        fixture.createFile("a" + i + ".txt", sampleText);
+      }
+      fixture.createFile("unrelated.txt", "zoo foo bar goo\n");
+      PsiTestUtil.addSourceContentToRoots(myModule, fixture.getFile(""));
+
+      FindModel findModel = new FindModel();
+      findModel.setStringToFind("TargetWord");
+      findModel.setWholeWordsOnly(true);
+      findModel.setFromCursor(false);
+      findModel.setGlobal(true);
+      findModel.setMultipleFiles(true);
+
+      parallel.setValue(false);
+      List<UsageInfo> sequentialUsages = findUsages(findModel);
+      parallel.setValue(true);
+      List<UsageInfo> parallelUsages = findUsages(findModel);
+
+      assertSize(fileCount * lineCount, sequentialUsages);
+      assertSize(fileCount * lineCount, parallelUsages);
+      assertEquals(getUsageOffsetsByFile(sequentialUsages), getUsageOffsetsByFile(parallelUsages));
+    }
+    finally {
+      parallel.setValue(oldParallel);
+      fixture.tearDown();
+    }
+  }
+
+  private static Map<VirtualFile, List<Integer>> getUsageOffsetsByFile(List<UsageInfo> usages) {
+    Map<VirtualFile, List<Integer>> result = new HashMap<VirtualFile, List<Integer>>();
+    for (UsageInfo usage : usages) {
+      List<Integer> offsets = result.get(usage.getVirtualFile());
+      if (offsets == null) {
+        result.put(usage.getVirtualFile(), offsets = new ArrayList<Integer>());
+      }
+      else {
+        assertTrue(usage.getVirtualFile().getName(), offsets.get(offsets.size() - 1) < usage.getSegment().getStartOffset());
+      }
+      offsets.add(usage.getSegment().getStartOffset());
+    }
+    return result;
+  }
+
   public void testLocalScopeSearchPerformance() throws Throwable {
     final int fileCount = 3000;
     final int lineCount = 500;
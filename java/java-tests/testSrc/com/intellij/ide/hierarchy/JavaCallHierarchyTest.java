@@ -1,6 +1,7 @@
 package com.intellij.ide.hierarchy;
 
 import com.intellij.JavaTestUtil;
+import com.intellij.ide.hierarchy.call.CallHierarchyNodeDescriptor;
 import com.intellij.ide.hierarchy.call.CallerMethodsTreeStructure;
 import com.intellij.openapi.util.Computable;
 import com.intellij.psi.JavaPsiFacade;
@@ -9,6 +10,10 @@ import com.intellij.psi.PsiMethod;
 import com.intellij.psi.search.ProjectScope;
 import com.intellij.testFramework.codeInsight.hierarchy.HierarchyViewTestBase;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author yole
  */
@@ -27,13 +32,17 @@ public class JavaCallHierarchyTest extends HierarchyViewTestBase {
     doHierarchyTest(new Computable<HierarchyTreeStructure>() {
       @Override
       public HierarchyTreeStructure compute() {
-        final PsiClass psiClass = JavaPsiFacade.getInstance(getProject()).findClass(classFqn, ProjectScope.getProjectScope(getProject()));
-        final PsiMethod method = psiClass.findMethodsByName(methodName, false) [0];
-        return new CallerMethodsTreeStructure(getProject(), method, HierarchyBrowserBaseEx.SCOPE_PROJECT);
+        return createCallerStructure(classFqn, methodName);
       }
     }, fileNames);
   }
 
+  private CallerMethodsTreeStructure createCallerStructure(String classFqn, String methodName) {
+    final PsiClass psiClass = JavaPsiFacade.getInstance(getProject()).findClass(classFqn, ProjectScope.getProjectScope(getProject()));
+    final PsiMethod method = psiClass.findMethodsByName(methodName, false) [0];
+    return new CallerMethodsTreeStructure(getProject(), method, HierarchyBrowserBaseEx.SCOPE_PROJECT);
+  }
+
   public void testIdeaDev41005() throws Exception {
     doJavaCallTypeHierarchyTest("B", "xyzzy", "B.java", "D.java", "A.java");
   }
@@ -53,4 +62,38 @@ public class JavaCallHierarchyTest extends HierarchyViewTestBase {
   public void testIdeaDev41232() throws Exception {
     doJavaCallTypeHierarchyTest("A", "main", "B.java", "A.java");
   }
+
+  public void testSiblingsSharingDeepestSuperMethod() throws Exception {
+    configureByFiles(null, "/" + getBasePath() + "/A.java", "/" + getBasePath() + "/B.java", "/" + getBasePath() + "/C.java",
+                     "/" + getBasePath() + "/D.java", "/" + getBasePath() + "/E.java");
+
+    // C.xyzzy() and D.xyzzy() both search for the references to B.xyzzy(), the second one reuses them
+    CallerMethodsTreeStructure structure = createCallerStructure("E", "target");
+    Object[] siblings = structure.getChildElements(structure.getRootElement());
+    assertEquals(2, siblings.length);
+    for (Object sibling : siblings) {
+      CallerMethodsTreeStructure fresh = createCallerStructure("E", "target");
+      Object freshSibling = null;
+      for (Object each : fresh.getChildElements(fresh.getRootElement())) {
+        if (((CallHierarchyNodeDescriptor)each).getEnclosingElement() == ((CallHierarchyNodeDescriptor)sibling).getEnclosingElement()) {
+          freshSibling = each;
+        }
+      }
+      assertNotNull(freshSibling);
+      List<String> children = getChildrenText(structure, sibling);
+      assertEquals(children.toString(), 2, children.size());
+      assertEquals(getChildrenText(fresh, freshSibling), children);
+    }
+  }
+
+  private static List<String> getChildrenText(HierarchyTreeStructure structure, Object element) {
+    List<String> result = new ArrayList<String>();
+    for (Object child : structure.getChildElements(element)) {
+      HierarchyNodeDescriptor descriptor = (HierarchyNodeDescriptor)child;
+      descriptor.update();
+      result.add(descriptor.getHighlightedText().getText());
+    }
+    Collections.sort(result);
+    return result;
+  }
 }
@@ -144,6 +144,27 @@ class Intf {
     assert getPopupElements(new GotoSymbolModel2(project), 'bar.goo.zzzZzz') == [method]
   }
 
+  public void "test typing more of the pattern in the same popup"() {
+    def uiUtil = myFixture.addClass("class UiUtil {}")
+    def uiAbstractUtil = myFixture.addClass("class UiAbstractUtil {}")
+    def uiManager = myFixture.addClass("class UiManager {}")
+
+    def popup = createPopup(new GotoClassModel2(project))
+    assert getPopupElements(popup, "Ui").containsAll([uiUtil, uiAbstractUtil, uiManager])
+    assert getPopupElements(popup, "UiU") == [uiUtil, uiAbstractUtil]
+    assert getPopupElements(popup, "UiUtil") == [uiUtil, uiAbstractUtil]
+    assert getPopupElements(popup, "UiM") == [uiManager]
+  }
+
+  public void "test typing more of the pattern keeps names with parentheses"() {
+    def report = myFixture.addFileToProject("Report(Final).txt", "")
+
+    def popup = createPopup(new GotoFileModel(project))
+    assert report in getPopupElements(popup, "R")
+    assert !(report in getPopupElements(popup, "RF"))
+    assert getPopupElements(popup, "RFi") == [report]
+  }
+
   private List<Object> getPopupElements(ChooseByNameModel model, String text) {
     return getPopupElements(createPopup(model), text)
   }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.intellij.util.ThrowableRunnable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typing an unbalanced brace into a method body of a 30k-line file cannot be absorbed by the code block chameleon,
+ * so every keystroke goes through the full reparse and tree diff.
+ * With the diff node limit exceeded, only the changed subtrees are replaced and PSI elsewhere stays valid.
+ */
+public class JavaTypingReparsePerformanceTest extends LightCodeInsightFixtureTestCase {
+  private static final int METHODS = 3000;
+
+  public void testTypingUnbalancedBracesInHugeFile() {
+    final String text = createText();
+    final PsiFile file = myFixture.configureByText("A.java", text);
+    final Document document = myFixture.getEditor().getDocument();
+    final int offset = text.indexOf("p += 0;", text.length() / 2);
+    final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+
+    PlatformTestUtil.startPerformanceTest(getTestName(false), 3000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Exception {
+        new WriteCommandAction.Simple(getProject()) {
+          @Override
+          protected void run() throws Throwable {
+            for (int i = 0; i < 10; i++) {
+              document.insertString(offset, "{");
+              documentManager.commitDocument(document);
+              document.deleteString(offset, offset + 1);
+              documentManager.commitDocument(document);
+            }
+          }
+        }.execute();
+      }
+    }).cpuBound().assertTiming();
+
+    assertEquals(text, file.getText());
+  }
+
+  public void testPsiOutsideOfEditSurvivesDiffNodeLimit() {
+    String text = createText();
+    PsiFile file = myFixture.configureByText("A.java", text);
+    Document document = myFixture.getEditor().getDocument();
+    int offset = text.indexOf("p += 0;", text.length() / 2);
+    PsiMethod[] methods = ((PsiJavaFile)file).getClasses()[0].getMethods();
+    List<PsiMethod> methodsBeforeEdit = new ArrayList<PsiMethod>();
+    for (PsiMethod method : methods) {
+      if (method.getTextRange().getEndOffset() < offset) methodsBeforeEdit.add(method);
+    }
+    assertTrue(methodsBeforeEdit.size() > METHODS / 3);
+
+    RegistryValue limit = Registry.get("psi.incremental.reparse.diff.node.limit");
+    int oldLimit = limit.asInteger();
+    limit.setValue(1000);
+    try {
+      typeAndCommit(document, offset, "{");
+      typeAndCommit(document, offset + 1, "}");
+    }
+    finally {
+      limit.setValue(oldLimit);
+    }
+
+    for (PsiMethod method : methodsBeforeEdit) {
+      assertTrue(method.getName(), method.isValid());
+    }
+    PsiFile reparsed = PsiFileFactory.getInstance(getProject()).createFileFromText("A.java", JavaFileType.INSTANCE, document.getText());
+    assertEquals(DebugUtil.psiToString(reparsed, false), DebugUtil.psiToString(file, false));
+  }
+
+  private void typeAndCommit(final Document document, final int offset, final String brace) {
+    new WriteCommandAction.Simple(getProject()) {
+      @Override
+      protected void run() throws Throwable {
+        document.insertString(offset, brace);
+        PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+      }
+    }.execute();
+  }
+
+  private static String createText() {
+    StringBuilder text = new StringBuilder("class A {\n");
+    for (int i = 0; i < METHODS; i++) {
+      text.append("  int m").append(i).append("(int p) {\n");
+      for (int j = 0; j < 8; j++) {
+        text.append("    p += ").append(j).append(";\n");
+      }
+      text.append("  }\n");
+    }
+    text.append("}");
+    return text.toString();
+  }
+}
@@ -29,6 +29,7 @@ import com.intellij.openapi.project.ex.ProjectManagerEx;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.impl.DebugUtil;
+import com.intellij.psi.impl.DocumentCommitThread;
 import com.intellij.psi.impl.PsiDocumentManagerImpl;
 import com.intellij.psi.impl.TextBlock;
 import com.intellij.psi.impl.source.PsiFileImpl;
@@ -36,6 +37,7 @@ import com.intellij.testFramework.LeakHunter;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.testFramework.PlatformTestCase;
 import com.intellij.util.Processor;
+import com.intellij.util.TimeoutUtil;
 import com.intellij.util.concurrency.Semaphore;
 import com.intellij.util.ui.UIUtil;
 
@@ -315,6 +317,33 @@ public class PsiDocumentManagerImplTest extends PlatformTestCase {
     assertEquals(2, count.get());
   }
 
+  public void testBackgroundCommitLatencyIncludesRequeuedCommits() throws Exception {
+    PsiFile file = getPsiManager().findFile(createFile());
+    assertNotNull(file);
+    final Document document = getPsiDocumentManager().getDocument(file);
+    assertNotNull(document);
+    DocumentCommitThread.Statistics statistics = DocumentCommitThread.getInstance().getStatistics();
+    statistics.reset();
+
+    ApplicationManager.getApplication().runWriteAction(new Runnable() {
+      @Override
+      public void run() {
+        document.insertString(0, "class X {}");
+        TimeoutUtil.sleep(100);
+        // queues the document again, replacing the commit queued above
+        document.insertString(0, "/**/");
+      }
+    });
+
+    final long limit = System.currentTimeMillis() + 30000;
+    while (!getPsiDocumentManager().isCommitted(document) || statistics.getBackgroundCommitCount() == 0) {
+      assertTrue("Timeout", System.currentTimeMillis() < limit);
+      UIUtil.dispatchAllInvocationEvents();
+    }
+    assertEquals(0, statistics.getSynchronousCommitCount());
+    assertTrue(statistics.toString(), statistics.getMaxBackgroundLatencyMs() >= 100);
+  }
+
   private static void waitAndPump(Semaphore semaphore, int timeout) {
     final long limit = System.currentTimeMillis() + timeout;
     while (System.currentTimeMillis() < limit) {
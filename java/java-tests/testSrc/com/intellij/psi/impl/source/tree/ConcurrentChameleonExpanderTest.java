@@ -0,0 +1,67 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.source.tree;
+
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import java.util.List;
+
+public class ConcurrentChameleonExpanderTest extends LightCodeInsightFixtureTestCase {
+  public void testConcurrentExpansionBuildsSameTreeAsSequential() {
+    StringBuilder text = new StringBuilder("class A {\n");
+    for (int i = 0; i < 500; i++) {
+      text.append("  int m").append(i).append("(int p) {\n")
+        .append("    if (p > ").append(i).append(") { return m").append(i).append("(p - 1); }\n")
+        .append("    Runnable r = new Runnable() { public void run() { System.out.println(\"").append(i).append("\"); } };\n")
+        .append("    for (int j = 0; j < p; j++) { p += j; }\n")
+        .append("    return p;\n")
+        .append("  }\n");
+    }
+    text.append("}");
+
+    FileElement concurrent = createFileElement(text.toString());
+    assertTrue(ConcurrentChameleonExpander.collectUnparsedChameleons(concurrent).size() >= 500);
+    assertTrue(ConcurrentChameleonExpander.expandConcurrently(concurrent, new EmptyProgressIndicator()));
+    assertEmpty(ConcurrentChameleonExpander.collectUnparsedChameleons(concurrent));
+
+    FileElement sequential = createFileElement(text.toString());
+    assertEquals(DebugUtil.treeToString(sequential, false), DebugUtil.treeToString(concurrent, false));
+  }
+
+  public void testParsedChameleonsAreNotCollected() {
+    FileElement file = createFileElement("class A { void a() { a(); } void b() { b(); } void c() { c(); } }");
+    List<LazyParseableElement> chameleons = ConcurrentChameleonExpander.collectUnparsedChameleons(file);
+    assertEquals(3, chameleons.size());
+
+    LazyParseableElement parsed = chameleons.get(0);
+    parsed.getFirstChildNode();
+    assertTrue(parsed.isParsed());
+
+    List<LazyParseableElement> unparsed = ConcurrentChameleonExpander.collectUnparsedChameleons(file);
+    assertOrderedEquals(unparsed, chameleons.get(1), chameleons.get(2));
+    for (LazyParseableElement chameleon : unparsed) {
+      assertFalse(chameleon.isParsed());
+    }
+  }
+
+  private FileElement createFileElement(String text) {
+    return (FileElement)PsiFileFactory.getInstance(getProject()).createFileFromText("A.java", JavaLanguage.INSTANCE, text).getNode();
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.source.tree;
+
+import com.intellij.codeInsight.daemon.impl.LocalInspectionsPass;
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.lang.xml.XMLLanguage;
+import com.intellij.psi.*;
+import com.intellij.psi.tree.TokenSet;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TreeCursorTest extends LightCodeInsightFixtureTestCase {
+  private static final String TEXT = "class A { int f; void m() { int i = 0; /* c */ i++; } }";
+
+  public void testPreOrderMatchesRecursiveVisitor() {
+    PsiFile file = createFile(TEXT);
+    final List<PsiElement> expected = new ArrayList<PsiElement>();
+    file.accept(new PsiRecursiveElementWalkingVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        expected.add(element);
+        super.visitElement(element);
+      }
+    });
+
+    List<PsiElement> actual = new ArrayList<PsiElement>();
+    TreeCursor cursor = TreeCursor.preOrder(file.getNode());
+    for (ASTNode node = cursor.next(); node != null; node = cursor.next()) {
+      actual.add(node.getPsi());
+    }
+    assertOrderedEquals(actual, expected);
+  }
+
+  public void testPostOrderVisitsChildrenFirst() {
+    PsiFile file = createFile(TEXT);
+    List<ASTNode> nodes = new ArrayList<ASTNode>();
+    TreeCursor cursor = TreeCursor.postOrder(file.getNode());
+    for (ASTNode node = cursor.next(); node != null; node = cursor.next()) {
+      for (ASTNode child = node.getFirstChildNode(); child != null; child = child.getTreeNext()) {
+        assertTrue(nodes.contains(child));
+      }
+      nodes.add(node);
+    }
+    assertSame(file.getNode(), nodes.get(nodes.size() - 1));
+    assertEquals(countNodes(file.getNode()), nodes.size());
+  }
+
+  public void testSkipChildrenAndFilter() {
+    PsiFile file = createFile(TEXT);
+    TreeCursor cursor = TreeCursor.preOrder(file.getNode());
+    int comments = 0;
+    for (ASTNode node = cursor.next(TokenSet.create(JavaTokenType.C_STYLE_COMMENT, JavaElementType.METHOD));
+         node != null;
+         node = cursor.next(TokenSet.create(JavaTokenType.C_STYLE_COMMENT, JavaElementType.METHOD))) {
+      if (node.getElementType() == JavaElementType.METHOD) {
+        cursor.skipChildren();
+      }
+      else {
+        comments++;
+      }
+    }
+    assertEquals(0, comments);
+
+    cursor.reset(file.getNode());
+    assertNotNull(cursor.next(JavaTokenType.C_STYLE_COMMENT));
+    assertNull(cursor.next(JavaTokenType.C_STYLE_COMMENT));
+  }
+
+  public void testInspectedElementsMatchPsiVisitor() {
+    PsiFile javaFile = createFile("/** doc */ @Deprecated class A<T extends Comparable<T>> {\n" +
+                                  "  int f = 1 + 2 * 3; // comment\n" +
+                                  "  void m(T t) { Runnable r = new Runnable() { public void run() { m(null); } }; if (t == null) return; }\n" +
+                                  "  enum E { X { }, Y }\n" +
+                                  "}");
+    assertOrderedEquals(LocalInspectionsPass.getElementsFrom(javaFile), collectWithPsiVisitor(javaFile));
+
+    PsiFile xmlFile = PsiFileFactory.getInstance(getProject()).createFileFromText(
+      "a.xml", XMLLanguage.INSTANCE, "<?xml version=\"1.0\"?>\n<!-- c --><a x=\"1\"><b>text &amp; more</b><![CDATA[ d ]]></a>");
+    assertOrderedEquals(LocalInspectionsPass.getElementsFrom(xmlFile), collectWithPsiVisitor(xmlFile));
+  }
+
+  public void testTraversalDoesNotAllocate() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (!(threadMXBean instanceof com.sun.management.ThreadMXBean) ||
+        !((com.sun.management.ThreadMXBean)threadMXBean).isThreadAllocatedMemoryEnabled()) {
+      return;
+    }
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threadMXBean;
+    StringBuilder text = new StringBuilder("class A {\n");
+    for (int i = 0; i < 2000; i++) {
+      text.append("  int m").append(i).append("(int p) { return p + ").append(i).append(" * m").append(i).append("(p - 1); }\n");
+    }
+    text.append("}");
+    ASTNode root = createFile(text.toString()).getNode();
+    int total = countNodes(root);
+    TreeCursor cursor = TreeCursor.preOrder(root);
+    long threadId = Thread.currentThread().getId();
+
+    long allocated = 0;
+    for (int i = 0; i < 10; i++) {
+      long before = allocations.getThreadAllocatedBytes(threadId);
+      cursor.reset(root);
+      int count = 0;
+      while (cursor.next() != null) count++;
+      allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+      assertEquals(total, count);
+    }
+    // the bean itself may allocate a little, but nothing proportional to the tree size
+    assertTrue("allocated " + allocated + " bytes for " + total + " nodes", allocated < total);
+  }
+
+  private PsiFile createFile(String text) {
+    return PsiFileFactory.getInstance(getProject()).createFileFromText("A.java", JavaLanguage.INSTANCE, text);
+  }
+
+  // the way the inspection pass collected elements before it used the cursor
+  private static List<PsiElement> collectWithPsiVisitor(PsiFile file) {
+    final List<PsiElement> result = new ArrayList<PsiElement>();
+    file.accept(new PsiRecursiveElementVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        for (PsiElement child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+          child.accept(this);
+          result.add(child);
+        }
+      }
+    });
+    result.add(file);
+    return result;
+  }
+
+  private static int countNodes(ASTNode root) {
+    int count = 1;
+    for (ASTNode child = root.getFirstChildNode(); child != null; child = child.getTreeNext()) {
+      count += countNodes(child);
+    }
+    return count;
+  }
+}
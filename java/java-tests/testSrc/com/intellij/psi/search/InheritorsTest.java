@@ -22,6 +22,7 @@ import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiPackage;
 import com.intellij.psi.search.searches.ClassInheritorsSearch;
+import com.intellij.psi.search.searches.DirectClassInheritorsSearch;
 import com.intellij.testFramework.IdeaTestUtil;
 import com.intellij.testFramework.PsiTestCase;
 import com.intellij.testFramework.PsiTestUtil;
@@ -53,6 +54,25 @@ public class InheritorsTest extends PsiTestCase{
     doTest("x.Test", "", true, "x.Goo", "x.Zoo");
   }
 
+  public void testNewInheritor() throws Exception {
+    doTest("pack1.Base", "", true, "pack1.Derived1");
+
+    PsiClass base = myJavaFacade.findClass("pack1.Base");
+    assertNotNull(base);
+    createFile(myModule, base.getContainingFile().getVirtualFile().getParent(), "Derived2.java",
+               "package pack1;\n\npublic class Derived2 extends Derived1 {\n}");
+    doTest("pack1.Base", "", true, "pack1.Derived1", "pack1.Derived2");
+  }
+
+  public void testStoppedSearchIsNotCached() throws Exception {
+    PsiClass base = myJavaFacade.findClass("pack1.Base");
+    assertNotNull(base);
+    createFile(myModule, base.getContainingFile().getVirtualFile().getParent(), "Derived3.java",
+               "package pack1;\n\npublic class Derived3 extends Base {\n}");
+    assertNotNull(DirectClassInheritorsSearch.search(base).findFirst());
+    assertEquals(2, DirectClassInheritorsSearch.search(base).findAll().size());
+  }
+
   private void doTest(String className, String packageScopeName, final boolean deep, String... inheritorNames) throws Exception {
     final PsiClass aClass = myJavaFacade.findClass(className);
     assertNotNull(aClass);
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.search;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.impl.cache.impl.id.WordOffsetIndex;
+import com.intellij.psi.impl.search.LowLevelSearchUtil;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.intellij.util.Processor;
+import com.intellij.util.text.MultiStringSearcher;
+import com.intellij.util.text.StringSearcher;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Checks that the searches which take the word occurrences from {@link WordOffsetIndex} find the same elements as scanning the text.
+ */
+public class WordOffsetIndexSearchTest extends LightCodeInsightFixtureTestCase {
+  // "BB" has the same hash as "Aa", so the index returns its offsets as candidates for "Aa"
+  private static final String TEXT = "class Foo {\n" +
+                                     "  int foo = 1; // foo\n" +
+                                     "  String a$foo = \"foo\";\n" +
+                                     "  int foo1 = foo;\n" +
+                                     "  void Aa() { foo(); BB(); }\n" +
+                                     "  void foo() { Aa(); }\n" +
+                                     "  void BB() {}\n" +
+                                     "}";
+  private boolean myWasEnabled;
+
+  @Override
+  protected void setUp() throws Exception {
+    myWasEnabled = WordOffsetIndex.isEnabled();
+    WordOffsetIndex.setEnabled(true);
+    super.setUp();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      super.tearDown();
+    }
+    finally {
+      WordOffsetIndex.setEnabled(myWasEnabled);
+    }
+  }
+
+  public void testWordSearchFindsTheSameAsScanning() {
+    PsiFile file = myFixture.addFileToProject("Foo.java", TEXT);
+    assertIndexed(file, "foo");
+
+    for (String word : new String[]{"foo", "Aa", "BB"}) {
+      List<String> expected = scan(file, word);
+      assertFalse(word, expected.isEmpty());
+      assertEquals(word, expected, search(word));
+    }
+  }
+
+  public void testMultiWordSearchFindsTheSameAsScanning() {
+    PsiFile file = myFixture.addFileToProject("Foo.java", TEXT);
+    assertIndexed(file, "foo");
+    assertIndexed(file, "Aa");
+
+    assertEquals(scanAll(file, "foo", "Aa"), searchAll("foo", "Aa"));
+  }
+
+  public void testChangedDocumentIsScanned() {
+    final PsiFile file = myFixture.addFileToProject("Foo.java", TEXT);
+    assertIndexed(file, "foo");
+    final Document document = FileDocumentManager.getInstance().getDocument(file.getVirtualFile());
+    assertNotNull(document);
+    new WriteCommandAction.Simple(getProject()) {
+      @Override
+      protected void run() throws Throwable {
+        document.insertString(0, "// foo Aa\n");
+        PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+      }
+    }.execute();
+
+    assertEquals(scan(file, "foo"), search("foo"));
+    assertEquals(scanAll(file, "foo", "Aa"), searchAll("foo", "Aa"));
+  }
+
+  private void assertIndexed(PsiFile file, String word) {
+    assertNull(FileDocumentManager.getInstance().getCachedDocument(file.getVirtualFile()));
+    StringSearcher searcher = new StringSearcher(word, true, true, false);
+    int[] offsets = LowLevelSearchUtil.getIndexedOccurrences(LowLevelSearchUtil.getIndexedOccurrences(
+      Collections.singleton(file.getVirtualFile()), searcher, getProject()), file);
+    assertNotNull(word, offsets);
+    assertTrue(word, offsets.length > 0);
+  }
+
+  private List<String> search(String word) {
+    List<String> result = Collections.synchronizedList(new ArrayList<String>());
+    PsiSearchHelper.SERVICE.getInstance(getProject())
+      .processElementsWithWord(new Recorder(word, result), GlobalSearchScope.projectScope(getProject()), word, UsageSearchContext.ANY, true);
+    return sorted(result);
+  }
+
+  private List<String> searchAll(String... words) {
+    final List<String> result = Collections.synchronizedList(new ArrayList<String>());
+    SearchRequestCollector collector = new SearchRequestCollector(new SearchSession());
+    for (final String word : words) {
+      collector.searchWord(word, GlobalSearchScope.projectScope(getProject()), UsageSearchContext.ANY, true, new RequestResultProcessor(word) {
+        @Override
+        public boolean processTextOccurrence(@NotNull PsiElement element, int offsetInElement, @NotNull Processor<PsiReference> consumer) {
+          return new Recorder(word, result).execute(element, offsetInElement);
+        }
+      });
+    }
+    PsiSearchHelper.SERVICE.getInstance(getProject()).processRequests(collector, new Processor<PsiReference>() {
+      @Override
+      public boolean process(PsiReference reference) {
+        return true;
+      }
+    });
+    return sorted(result);
+  }
+
+  private static List<String> scan(PsiFile file, String word) {
+    List<String> result = new ArrayList<String>();
+    LowLevelSearchUtil.processElementsContainingWordInElement(new Recorder(word, result), file, new StringSearcher(word, true, true, false), true, null);
+    return sorted(result);
+  }
+
+  private static List<String> scanAll(PsiFile file, String... words) {
+    List<String> result = new ArrayList<String>();
+    List<StringSearcher> searchers = new ArrayList<StringSearcher>();
+    List<TextOccurenceProcessor> processors = new ArrayList<TextOccurenceProcessor>();
+    for (String word : words) {
+      searchers.add(new StringSearcher(word, true, true, false));
+      processors.add(new Recorder(word, result));
+    }
+    LowLevelSearchUtil.processElementsContainingWordsInElement(processors, file, new MultiStringSearcher(searchers), true, null);
+    return sorted(result);
+  }
+
+  private static List<String> sorted(List<String> list) {
+    List<String> result = new ArrayList<String>(list);
+    Collections.sort(result);
+    return result;
+  }
+
+  private static class Recorder implements TextOccurenceProcessor {
+    private final String myWord;
+    private final List<String> myResult;
+
+    private Recorder(String word, List<String> result) {
+      myWord = word;
+      myResult = result;
+    }
+
+    @Override
+    public boolean execute(@NotNull PsiElement element, int offsetInElement) {
+      myResult.add(myWord + "@" + (element.getTextRange().getStartOffset() + offsetInElement) + " in " + element);
+      return true;
+    }
+  }
+}
@@ -29,6 +29,9 @@ import com.intellij.util.containers.Stack;
 import gnu.trove.TIntStack;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -147,4 +150,79 @@ public class Divider {
     assert inside.size() == insideRanges.size();
     assert outside.size() == outsideRanges.size();
   }
+
+  /**
+   * Reorders the elements outside the range, as returned by {@link #divideInsideAndOutside}, so that the subtrees closer to the range
+   * come first. Each subtree lying entirely before or after the range is kept in place as a unit, and the elements overlapping the range
+   * go last, so every element still follows all its descendants.
+   */
+  public static void sortByDistance(@NotNull List<PsiElement> outside, @NotNull List<ProperTextRange> outsideRanges, @NotNull TextRange range) {
+    sortByDistance(outside, outsideRanges, range, range);
+  }
+
+  /**
+   * Same as {@link #sortByDistance(List, List, TextRange)}, but the subtrees are ordered by their distance from the anchor,
+   * e.g. the caret, which should lie within the range.
+   */
+  public static void sortByDistance(@NotNull List<PsiElement> outside,
+                                    @NotNull List<ProperTextRange> outsideRanges,
+                                    @NotNull TextRange range,
+                                    @NotNull final TextRange anchor) {
+    assert outside.size() == outsideRanges.size();
+    Stack<Chunk> chunks = new Stack<Chunk>();
+    List<Integer> overlapping = new ArrayList<Integer>();
+    for (int i = 0; i < outsideRanges.size(); i++) {
+      ProperTextRange elementRange = outsideRanges.get(i);
+      if (elementRange.getEndOffset() > range.getStartOffset() && elementRange.getStartOffset() < range.getEndOffset()) {
+        overlapping.add(i);
+        continue;
+      }
+      int start = i;
+      while (!chunks.isEmpty() && chunks.peek().end == start - 1 && elementRange.contains(chunks.peek().range)) {
+        start = chunks.pop().start;
+      }
+      chunks.push(new Chunk(start, i, elementRange));
+    }
+    if (chunks.size() < 2) return;
+
+    List<Chunk> sorted = new ArrayList<Chunk>(chunks);
+    Collections.sort(sorted, new Comparator<Chunk>() {
+      @Override
+      public int compare(Chunk o1, Chunk o2) {
+        return distance(o1.range, anchor) - distance(o2.range, anchor);
+      }
+    });
+    List<PsiElement> elements = new ArrayList<PsiElement>(outside.size());
+    List<ProperTextRange> ranges = new ArrayList<ProperTextRange>(outside.size());
+    for (Chunk chunk : sorted) {
+      elements.addAll(outside.subList(chunk.start, chunk.end + 1));
+      ranges.addAll(outsideRanges.subList(chunk.start, chunk.end + 1));
+    }
+    for (int i : overlapping) {
+      elements.add(outside.get(i));
+      ranges.add(outsideRanges.get(i));
+    }
+    outside.clear();
+    outside.addAll(elements);
+    outsideRanges.clear();
+    outsideRanges.addAll(ranges);
+  }
+
+  private static int distance(@NotNull TextRange elementRange, @NotNull TextRange range) {
+    return elementRange.getEndOffset() <= range.getStartOffset()
+           ? range.getStartOffset() - elementRange.getEndOffset()
+           : elementRange.getStartOffset() - range.getEndOffset();
+  }
+
+  private static class Chunk {
+    private final int start;
+    private final int end;
+    private final ProperTextRange range;
+
+    private Chunk(int start, int end, @NotNull ProperTextRange range) {
+      this.start = start;
+      this.end = end;
+      this.range = range;
+    }
+  }
 }
@@ -346,6 +346,16 @@ public class GlobalInspectionContextBase extends UserDataHolderBase implements G
     }
   }
 
+  /**
+   * Fills {@link #getTools()} with the tools of the current profile without initializing them,
+   * e.g. to convert the results which other inspection runs have written.
+   */
+  public void collectTools() {
+    for (Tools tools : getUsedTools()) {
+      myTools.put(tools.getShortName(), tools);
+    }
+  }
+
   protected List<Tools> getUsedTools() {
     InspectionProfileImpl profile = new InspectionProfileImpl((InspectionProfileImpl)getCurrentProfile());
     List<Tools> tools = profile.getAllEnabledInspectionTools(myProject);
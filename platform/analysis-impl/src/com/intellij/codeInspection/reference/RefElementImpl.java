@@ -36,6 +36,7 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.SmartPointerManager;
 import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.util.SmartList;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -57,8 +58,9 @@ public abstract class RefElementImpl extends RefEntityImpl implements RefElement
 
   private final SmartPsiElementPointer myID;
 
-  private List<RefElement> myOutReferences;
-  private List<RefElement> myInReferences;
+  // most elements have a few references, which SmartList keeps without an ArrayList and its spare capacity
+  private SmartList<RefElement> myOutReferences;
+  private SmartList<RefElement> myInReferences;
 
   private String[] mySuppressions = null;
 
@@ -185,7 +187,7 @@ public abstract class RefElementImpl extends RefEntityImpl implements RefElement
   public void addInReference(RefElement refElement) {
     if (!getInReferences().contains(refElement)) {
       if (myInReferences == null){
-        myInReferences = new ArrayList<RefElement>(1);
+        myInReferences = new SmartList<RefElement>();
       }
       myInReferences.add(refElement);
     }
@@ -194,12 +196,25 @@ public abstract class RefElementImpl extends RefEntityImpl implements RefElement
   public void addOutReference(RefElement refElement) {
     if (!getOutReferences().contains(refElement)) {
       if (myOutReferences == null){
-        myOutReferences = new ArrayList<RefElement>(1);
+        myOutReferences = new SmartList<RefElement>();
       }
       myOutReferences.add(refElement);
     }
   }
 
+  /**
+   * Releases the spare capacity of the reference lists once the reference graph is built.
+   * This only shrinks the per-element lists; the graph itself still consists of RefElement objects.
+   */
+  public void trimReferences() {
+    if (myOutReferences != null) {
+      myOutReferences.trimToSize();
+    }
+    if (myInReferences != null) {
+      myInReferences.trimToSize();
+    }
+  }
+
   public void setEntry(boolean entry) {
     setFlag(entry, IS_ENTRY_MASK);
   }
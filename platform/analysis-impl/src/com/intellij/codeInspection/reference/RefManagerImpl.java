@@ -288,11 +288,26 @@ public class RefManagerImpl extends RefManager {
       long before = System.currentTimeMillis();
       getScope().accept(myProjectIterator);
       myDeclarationsFound = true;
+      trimReferences();
 
       LOG.info("Total duration of processing project usages:" + (System.currentTimeMillis() - before));
     }
   }
 
+  private void trimReferences() {
+    myLock.readLock().lock();
+    try {
+      for (RefElement refElement : myRefTable.values()) {
+        if (refElement instanceof RefElementImpl) {
+          ((RefElementImpl)refElement).trimReferences();
+        }
+      }
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+  }
+
   public boolean isDeclarationsFound() {
     return myDeclarationsFound;
   }
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.tree;
+
+/**
+ * Marker for {@link ILazyParseableElementType}s whose contents can be parsed independently of any other chameleon in the same file.
+ * Implementations must not keep parser state outside of the builder created for the particular chameleon.
+ * Unparsed chameleons of such types may be expanded concurrently on several threads,
+ * see {@link com.intellij.psi.impl.source.tree.ConcurrentChameleonExpander}.
+ */
+public interface IConcurrentlyParseableElementType {
+}
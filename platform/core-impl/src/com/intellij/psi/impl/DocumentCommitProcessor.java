@@ -65,15 +65,25 @@ public abstract class DocumentCommitProcessor {
     public final ProgressIndicator indicator; // progress to commit this doc under.
     public final Object reason;
     public boolean removed; // task marked as removed, should be ignored.
+    public final long queuedNanos; // when the document was first queued for commit, kept when the commit is re-queued
 
     public CommitTask(@NotNull Document document,
                        @NotNull Project project,
                        @NotNull ProgressIndicator indicator,
                        @NotNull Object reason) {
+      this(document, project, indicator, reason, System.nanoTime());
+    }
+
+    public CommitTask(@NotNull Document document,
+                      @NotNull Project project,
+                      @NotNull ProgressIndicator indicator,
+                      @NotNull Object reason,
+                      long queuedNanos) {
       this.document = document;
       this.project = project;
       this.indicator = indicator;
       this.reason = reason;
+      this.queuedNanos = queuedNanos;
     }
 
     @NonNls
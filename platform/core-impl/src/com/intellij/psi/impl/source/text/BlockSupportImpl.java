@@ -268,7 +268,8 @@ public class BlockSupportImpl extends BlockSupport {
                                    @NotNull final FlyweightCapableTreeStructure<T> newTreeStructure,
                                    final ProgressIndicator indicator) {
     TreeUtil.ensureParsedRecursivelyCheckingProgress(oldRoot, indicator);
-    DiffTree.diff(createInterruptibleASTStructure(oldRoot, indicator), newTreeStructure, comparator, builder);
+    DiffTree.diff(createInterruptibleASTStructure(oldRoot, indicator), newTreeStructure, comparator, builder,
+                  getIncrementalReparseDiffNodeLimit());
   }
 
   private static ASTStructure createInterruptibleASTStructure(@NotNull final ASTNode oldRoot, @Nullable final ProgressIndicator indicator) {
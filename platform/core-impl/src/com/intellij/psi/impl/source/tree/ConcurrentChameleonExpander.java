@@ -0,0 +1,97 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.source.tree;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.psi.tree.IConcurrentlyParseableElementType;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Expands the outermost unparsed chameleons of {@link IConcurrentlyParseableElementType} types in a file concurrently,
+ * so that the subsequent full tree traversal (e.g. by the highlighting passes) does not parse them one by one.
+ * The file tree itself is lexed and parsed once as usual; only the lazy regions are parsed in parallel,
+ * each into its own {@link LazyParseableElement} which is already attached to the file.
+ */
+public class ConcurrentChameleonExpander {
+  private static final int MIN_CHAMELEONS_TO_EXPAND = 2;
+
+  private ConcurrentChameleonExpander() {
+  }
+
+  public static boolean isEnabledFor(@NotNull FileElement fileElement) {
+    return Registry.is("psi.concurrent.chameleon.expansion") &&
+           fileElement.getTextLength() >= Registry.intValue("psi.concurrent.chameleon.expansion.min.file.length");
+  }
+
+  /**
+   * @return false if the expansion was cancelled
+   */
+  public static boolean expandConcurrently(@NotNull FileElement fileElement, @NotNull ProgressIndicator progress) {
+    List<LazyParseableElement> chameleons = collectUnparsedChameleons(fileElement);
+    if (chameleons.size() < MIN_CHAMELEONS_TO_EXPAND) return true;
+
+    return JobLauncher.getInstance().invokeConcurrentlyUnderProgress(chameleons, progress, true, new Processor<LazyParseableElement>() {
+      @Override
+      public boolean process(LazyParseableElement chameleon) {
+        // triggers ensureParsed(); each chameleon is guarded by its own lock
+        chameleon.getFirstChildNode();
+        return true;
+      }
+    });
+  }
+
+  // does not parse anything: descends only into already parsed composites
+  @NotNull
+  static List<LazyParseableElement> collectUnparsedChameleons(@NotNull CompositeElement root) {
+    List<LazyParseableElement> result = new ArrayList<LazyParseableElement>();
+    TreeElement child = root.rawFirstChild();
+    while (child != null) {
+      if (child instanceof LazyParseableElement && !((LazyParseableElement)child).isParsed()) {
+        if (child.getElementType() instanceof IConcurrentlyParseableElementType) {
+          result.add((LazyParseableElement)child);
+        }
+      }
+      else if (child instanceof CompositeElement) {
+        TreeElement first = ((CompositeElement)child).rawFirstChild();
+        if (first != null) {
+          child = first;
+          continue;
+        }
+      }
+      child = nextSkippingChildren(child, root);
+    }
+    return result;
+  }
+
+  @Nullable
+  private static TreeElement nextSkippingChildren(@NotNull TreeElement element, @NotNull CompositeElement root) {
+    TreeElement current = element;
+    while (current != root) {
+      TreeElement next = current.getTreeNext();
+      if (next != null) return next;
+      current = current.getTreeParent();
+      if (current == null) break;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.source.tree;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Iterative traversal of an AST subtree which allocates neither child arrays nor visitor frames,
+ * unlike {@link com.intellij.psi.PsiRecursiveElementVisitor} or {@link ASTNode#getChildren(TokenSet)}.
+ * A cursor can be reused for another subtree via {@link #reset(ASTNode)}.
+ * <pre>
+ *   TreeCursor cursor = TreeCursor.preOrder(root);
+ *   for (ASTNode node = cursor.next(); node != null; node = cursor.next()) {
+ *     ...
+ *   }
+ * </pre>
+ * The tree must not be modified during the traversal.
+ */
+public final class TreeCursor {
+  private final boolean myPostOrder;
+  private ASTNode myRoot;
+  private ASTNode myCurrent;
+  private boolean myStarted;
+  private boolean mySkipChildren;
+
+  private TreeCursor(@NotNull ASTNode root, boolean postOrder) {
+    myPostOrder = postOrder;
+    reset(root);
+  }
+
+  /**
+   * Parents are returned before their children, the root first.
+   */
+  @NotNull
+  public static TreeCursor preOrder(@NotNull ASTNode root) {
+    return new TreeCursor(root, false);
+  }
+
+  /**
+   * Children are returned before their parents, the root last.
+   */
+  @NotNull
+  public static TreeCursor postOrder(@NotNull ASTNode root) {
+    return new TreeCursor(root, true);
+  }
+
+  public void reset(@NotNull ASTNode root) {
+    myRoot = root;
+    myCurrent = null;
+    myStarted = false;
+    mySkipChildren = false;
+  }
+
+  /**
+   * @return the next node of the traversal or null when the whole subtree has been walked
+   */
+  @Nullable
+  public ASTNode next() {
+    if (!myStarted) {
+      myStarted = true;
+      myCurrent = myPostOrder ? deepestFirstChild(myRoot) : myRoot;
+      return myCurrent;
+    }
+    if (myCurrent == null) return null;
+    return myCurrent = myPostOrder ? nextPostOrder(myCurrent) : nextPreOrder(myCurrent);
+  }
+
+  @Nullable
+  public ASTNode next(@NotNull IElementType type) {
+    ASTNode node = next();
+    while (node != null && node.getElementType() != type) {
+      node = next();
+    }
+    return node;
+  }
+
+  @Nullable
+  public ASTNode next(@NotNull TokenSet types) {
+    ASTNode node = next();
+    while (node != null && !types.contains(node.getElementType())) {
+      node = next();
+    }
+    return node;
+  }
+
+  /**
+   * Makes the pre-order traversal proceed with the next sibling of the node last returned instead of its first child.
+   */
+  public void skipChildren() {
+    if (myPostOrder) throw new IllegalStateException("Children are already visited in post-order traversal");
+    mySkipChildren = true;
+  }
+
+  @Nullable
+  private ASTNode nextPreOrder(@NotNull ASTNode current) {
+    ASTNode child = mySkipChildren ? null : current.getFirstChildNode();
+    mySkipChildren = false;
+    if (child != null) return child;
+
+    ASTNode node = current;
+    while (node != myRoot) {
+      ASTNode next = node.getTreeNext();
+      if (next != null) return next;
+      node = node.getTreeParent();
+      if (node == null) break;
+    }
+    return null;
+  }
+
+  @Nullable
+  private ASTNode nextPostOrder(@NotNull ASTNode current) {
+    if (current == myRoot) return null;
+    ASTNode next = current.getTreeNext();
+    return next != null ? deepestFirstChild(next) : current.getTreeParent();
+  }
+
+  @NotNull
+  private static ASTNode deepestFirstChild(@NotNull ASTNode node) {
+    ASTNode result = node;
+    for (ASTNode child = result.getFirstChildNode(); child != null; child = child.getFirstChildNode()) {
+      result = child;
+    }
+    return result;
+  }
+}
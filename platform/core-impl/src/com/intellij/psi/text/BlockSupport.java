@@ -68,6 +68,12 @@ public abstract class BlockSupport {
   // if tree is deeper then it will be replaced completely - to avoid SOEs
   public static final int INCREMENTAL_REPARSE_DEPTH_LIMIT = Registry.intValue("psi.incremental.reparse.depth.limit", 1000);
 
+  // maximal number of children of changed nodes the old and the new trees are compared by
+  // changed subtrees met after that are replaced as a whole, unchanged ones are still compared and kept
+  public static int getIncrementalReparseDiffNodeLimit() {
+    return Registry.intValue("psi.incremental.reparse.diff.node.limit", 300000);
+  }
+
   public static final Key<Boolean> TREE_DEPTH_LIMIT_EXCEEDED = Key.create("TREE_IS_TOO_DEEP");
 
   public static boolean isTooDeep(final UserDataHolder element) {
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.cache.impl.id;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.InlineKeyDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import gnu.trove.THashMap;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntObjectHashMap;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Start offsets of the words of a file. A word is a maximal run of Java identifier characters other than '$',
+ * which is exactly what {@link com.intellij.psi.impl.search.LowLevelSearchUtil} accepts as a whole-word occurrence
+ * of such a pattern. Keys are case-sensitive word hashes, so the offsets of different words with the same hash are merged
+ * and each offset has to be checked against the text.
+ * <p/>
+ * The index is built only with -Didea.word.offset.index.enabled=true. On the Java sources of this project it takes about a third
+ * of the text size, nearly twice as much as {@link IdIndex}, while scanning all the files a common word is found in takes a few
+ * milliseconds. Apart from the scan, it only saves loading the candidate files in which the word turns out not to occur.
+ */
+public class WordOffsetIndex extends FileBasedIndexExtension<IdIndexEntry, int[]> {
+  private static final boolean ENABLED_BY_PROPERTY = "true".equals(System.getProperty("idea.word.offset.index.enabled"));
+  private static volatile boolean ourEnabled = ENABLED_BY_PROPERTY;
+
+  @NonNls public static final ID<IdIndexEntry, int[]> NAME = ID.create("WordOffsetIndex");
+
+  private final FileBasedIndex.InputFilter myInputFilter = new FileBasedIndex.InputFilter() {
+    @Override
+    public boolean acceptInput(final VirtualFile file) {
+      return ourEnabled && IdIndex.isIndexable(file.getFileType());
+    }
+  };
+
+  private final DataExternalizer<int[]> myValueExternalizer = new DataExternalizer<int[]>() {
+    @Override
+    public void save(final DataOutput out, final int[] value) throws IOException {
+      DataInputOutputUtil.writeINT(out, value.length);
+      int prev = 0;
+      for (int offset : value) {
+        DataInputOutputUtil.writeINT(out, offset - prev);
+        prev = offset;
+      }
+    }
+
+    @Override
+    public int[] read(final DataInput in) throws IOException {
+      int[] result = new int[DataInputOutputUtil.readINT(in)];
+      int prev = 0;
+      for (int i = 0; i < result.length; i++) {
+        prev += DataInputOutputUtil.readINT(in);
+        result[i] = prev;
+      }
+      return result;
+    }
+  };
+
+  private final KeyDescriptor<IdIndexEntry> myKeyDescriptor = new InlineKeyDescriptor<IdIndexEntry>() {
+    @Override
+    public IdIndexEntry fromInt(int n) {
+      return new IdIndexEntry(n);
+    }
+
+    @Override
+    public int toInt(IdIndexEntry idIndexEntry) {
+      return idIndexEntry.getWordHashCode();
+    }
+  };
+
+  private final DataIndexer<IdIndexEntry, int[], FileContent> myIndexer = new DataIndexer<IdIndexEntry, int[], FileContent>() {
+    @Override
+    @NotNull
+    public Map<IdIndexEntry, int[]> map(final FileContent inputData) {
+      CharSequence text = inputData.getContentAsText();
+      Map<IdIndexEntry, TIntArrayList> offsets = new THashMap<IdIndexEntry, TIntArrayList>();
+      int length = text.length();
+      int start = -1;
+      for (int i = 0; i <= length; i++) {
+        if (i < length && isWordPart(text.charAt(i))) {
+          if (start < 0) start = i;
+          continue;
+        }
+        if (start >= 0) {
+          IdIndexEntry entry = new IdIndexEntry(StringUtil.stringHashCode(text, start, i));
+          TIntArrayList list = offsets.get(entry);
+          if (list == null) {
+            offsets.put(entry, list = new TIntArrayList());
+          }
+          list.add(start);
+          start = -1;
+        }
+      }
+
+      Map<IdIndexEntry, int[]> result = new THashMap<IdIndexEntry, int[]>(offsets.size());
+      for (Map.Entry<IdIndexEntry, TIntArrayList> entry : offsets.entrySet()) {
+        result.put(entry.getKey(), entry.getValue().toNativeArray());
+      }
+      return result;
+    }
+  };
+
+  static boolean isWordPart(char c) {
+    return Character.isJavaIdentifierPart(c) && c != '$';
+  }
+
+  public static boolean isEnabled() {
+    return ourEnabled;
+  }
+
+  @TestOnly
+  public static void setEnabled(boolean enabled) {
+    ourEnabled = enabled;
+  }
+
+  /**
+   * @return true if the word occurrences of the pattern can be taken from the index
+   */
+  public static boolean isIndexedWord(@NotNull String word) {
+    if (!ourEnabled || word.isEmpty()) return false;
+    for (int i = 0; i < word.length(); i++) {
+      if (!isWordPart(word.charAt(i))) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Looks the word up once for all the given files.
+   *
+   * @return the ascending start offsets of the candidate occurrences of the word in the files as they were indexed, by file id;
+   *         files without occurrences are absent
+   */
+  @NotNull
+  public static TIntObjectHashMap<int[]> getOffsets(@NotNull String word, @NotNull Collection<VirtualFile> files, @NotNull Project project) {
+    final TIntObjectHashMap<int[]> result = new TIntObjectHashMap<int[]>();
+    if (files.isEmpty()) return result;
+    FileBasedIndex.getInstance().processValues(NAME, new IdIndexEntry(word, true), null, new FileBasedIndex.ValueProcessor<int[]>() {
+      @Override
+      public boolean process(VirtualFile file, int[] value) {
+        // the indexer merges the words with the same hash, so there is one value per file
+        result.put(FileBasedIndex.getFileId(file), value);
+        return true;
+      }
+    }, GlobalSearchScope.filesScope(project, files));
+    return result;
+  }
+
+  @Override
+  public int getVersion() {
+    return ENABLED_BY_PROPERTY ? 2 : 1;
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @NotNull
+  @Override
+  public ID<IdIndexEntry, int[]> getName() {
+    return NAME;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<IdIndexEntry, int[], FileContent> getIndexer() {
+    return myIndexer;
+  }
+
+  @Override
+  public DataExternalizer<int[]> getValueExternalizer() {
+    return myValueExternalizer;
+  }
+
+  @Override
+  public KeyDescriptor<IdIndexEntry> getKeyDescriptor() {
+    return myKeyDescriptor;
+  }
+
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return myInputFilter;
+  }
+}
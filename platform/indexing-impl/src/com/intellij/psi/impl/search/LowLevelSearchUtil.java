@@ -19,23 +19,32 @@ package com.intellij.psi.impl.search;
 import com.intellij.lang.ASTNode;
 import com.intellij.lang.injection.InjectedLanguageManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiLanguageInjectionHost;
+import com.intellij.psi.impl.cache.impl.id.WordOffsetIndex;
 import com.intellij.psi.impl.source.tree.LeafElement;
 import com.intellij.psi.impl.source.tree.TreeElement;
 import com.intellij.psi.search.TextOccurenceProcessor;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.ArrayUtil;
 import com.intellij.util.text.CharArrayUtil;
+import com.intellij.util.text.MultiStringSearcher;
 import com.intellij.util.text.StringSearcher;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.List;
 
 public class LowLevelSearchUtil {
@@ -145,6 +154,20 @@ public class LowLevelSearchUtil {
                                                                @NotNull StringSearcher searcher,
                                                                final boolean processInjectedPsi,
                                                                ProgressIndicator progress) {
+    return processElementsContainingWordInElement(processor, scope, searcher, processInjectedPsi, progress, null);
+  }
+
+  /**
+   * @param indexedOffsets the candidate occurrences in the file of the scope, see {@link #getIndexedOccurrences(TIntObjectHashMap, PsiElement)},
+   *                       or null to scan the text
+   */
+  //@RequiresReadAction
+  public static boolean processElementsContainingWordInElement(@NotNull TextOccurenceProcessor processor,
+                                                               @NotNull final PsiElement scope,
+                                                               @NotNull StringSearcher searcher,
+                                                               final boolean processInjectedPsi,
+                                                               ProgressIndicator progress,
+                                                               @Nullable int[] indexedOffsets) {
     if (progress != null) progress.checkCanceled();
 
     PsiFile file = scope.getContainingFile();
@@ -165,6 +188,9 @@ public class LowLevelSearchUtil {
     final char[] bufferArray = CharArrayUtil.fromSequenceWithoutCopying(buffer);
 
     Project project = file.getProject();
+    if (indexedOffsets != null) {
+      return processIndexedOccurrences(processor, scope, searcher, indexedOffsets, buffer, bufferArray, endOffset, processInjectedPsi, progress);
+    }
     do {
       if (progress != null) progress.checkCanceled();
       startOffset  = searchWord(buffer, bufferArray, startOffset, endOffset, searcher, progress);
@@ -180,6 +206,140 @@ public class LowLevelSearchUtil {
     return true;
   }
 
+  /**
+   * Same as calling {@link #processElementsContainingWordInElement} for every searcher of the given multi-searcher
+   * with the corresponding processor, but the text of the scope is scanned only once.
+   */
+  //@RequiresReadAction
+  public static boolean processElementsContainingWordsInElement(@NotNull List<? extends TextOccurenceProcessor> processors,
+                                                                @NotNull final PsiElement scope,
+                                                                @NotNull MultiStringSearcher searcher,
+                                                                final boolean processInjectedPsi,
+                                                                ProgressIndicator progress) {
+    return processElementsContainingWordsInElement(processors, scope, searcher, processInjectedPsi, progress, null);
+  }
+
+  /**
+   * @param indexedOffsets the candidate occurrences in the file of the scope for every searcher of the multi-searcher,
+   *                       or null to scan the text
+   */
+  //@RequiresReadAction
+  public static boolean processElementsContainingWordsInElement(@NotNull List<? extends TextOccurenceProcessor> processors,
+                                                                @NotNull final PsiElement scope,
+                                                                @NotNull MultiStringSearcher searcher,
+                                                                final boolean processInjectedPsi,
+                                                                ProgressIndicator progress,
+                                                                @Nullable int[][] indexedOffsets) {
+    if (progress != null) progress.checkCanceled();
+
+    PsiFile file = scope.getContainingFile();
+    final CharSequence buffer = file.getViewProvider().getContents();
+
+    TextRange range = scope.getTextRange();
+    if (range == null) {
+      throw new AssertionError("Element " + scope + " of class " + scope.getClass() + " has null range");
+    }
+
+    int scopeStart = range.getStartOffset();
+    int endOffset = Math.min(range.getEndOffset(), buffer.length());
+
+    final char[] bufferArray = CharArrayUtil.fromSequenceWithoutCopying(buffer);
+    List<StringSearcher> searchers = searcher.getSearchers();
+
+    if (indexedOffsets != null) {
+      for (int i = 0; i < searchers.size(); i++) {
+        if (!processIndexedOccurrences(processors.get(i), scope, searchers.get(i), indexedOffsets[i], buffer, bufferArray, endOffset,
+                                       processInjectedPsi, progress)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    TIntArrayList[] occurrences = searcher.findOccurrences(buffer, bufferArray, scopeStart, endOffset);
+
+    Project project = file.getProject();
+    for (int i = 0; i < searchers.size(); i++) {
+      StringSearcher wordSearcher = searchers.get(i);
+      TIntArrayList offsets = occurrences[i];
+      for (int j = 0; j < offsets.size(); j++) {
+        if (progress != null) progress.checkCanceled();
+        int offset = offsets.get(j);
+        if (!isWordOccurrence(buffer, bufferArray, scopeStart, endOffset, offset, wordSearcher)) continue;
+        if (!processTreeUp(project, processors.get(i), scope, wordSearcher, offset - scopeStart, processInjectedPsi, progress)) return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static boolean processIndexedOccurrences(@NotNull TextOccurenceProcessor processor,
+                                                   @NotNull PsiElement scope,
+                                                   @NotNull StringSearcher searcher,
+                                                   @NotNull int[] offsets,
+                                                   @NotNull CharSequence buffer,
+                                                   @Nullable char[] bufferArray,
+                                                   int endOffset,
+                                                   boolean processInjectedPsi,
+                                                   ProgressIndicator progress) {
+    int scopeStart = scope.getTextRange().getStartOffset();
+    Project project = scope.getProject();
+    String pattern = searcher.getPattern();
+    for (int offset : offsets) {
+      if (progress != null) progress.checkCanceled();
+      if (offset < scopeStart || offset + pattern.length() > endOffset) continue;
+      if (!CharArrayUtil.regionMatches(buffer, offset, pattern)) continue;
+      if (!isWordOccurrence(buffer, bufferArray, scopeStart, endOffset, offset, searcher)) continue;
+      if (!processTreeUp(project, processor, scope, searcher, offset - scopeStart, processInjectedPsi, progress)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Looks the word of the searcher up in {@link WordOffsetIndex} once for all the given files.
+   *
+   * @return the candidate occurrences by file id, to be passed to {@link #getIndexedOccurrences(TIntObjectHashMap, PsiElement)},
+   *         or null if the searcher cannot use the index
+   */
+  @Nullable
+  public static TIntObjectHashMap<int[]> getIndexedOccurrences(@NotNull Collection<VirtualFile> files,
+                                                               @NotNull StringSearcher searcher,
+                                                               @NotNull Project project) {
+    if (!searcher.isCaseSensitive() || searcher.isHandleEscapeSequences() || !WordOffsetIndex.isIndexedWord(searcher.getPattern())) {
+      return null;
+    }
+    return WordOffsetIndex.getOffsets(searcher.getPattern(), files, project);
+  }
+
+  /**
+   * @return the candidate occurrences in the file of the element, or null if they have to be found by scanning the text
+   *         because the file is loaded into a document which might differ from the indexed content
+   */
+  @Nullable
+  public static int[] getIndexedOccurrences(@Nullable TIntObjectHashMap<int[]> occurrences, @NotNull PsiElement element) {
+    if (occurrences == null) return null;
+    VirtualFile virtualFile = element.getContainingFile().getViewProvider().getVirtualFile();
+    if (!isIndexedContent(virtualFile)) return null;
+    int[] offsets = occurrences.get(((VirtualFileWithId)virtualFile).getId());
+    return offsets != null ? offsets : ArrayUtil.EMPTY_INT_ARRAY;
+  }
+
+  /**
+   * @return false if the index shows that the file contains none of the words, so that it does not have to be loaded at all
+   */
+  public static boolean mayContainIndexedOccurrences(@NotNull VirtualFile file, @NotNull List<TIntObjectHashMap<int[]>> occurrences) {
+    if (!isIndexedContent(file)) return true;
+    int id = ((VirtualFileWithId)file).getId();
+    for (TIntObjectHashMap<int[]> wordOccurrences : occurrences) {
+      if (wordOccurrences == null || wordOccurrences.containsKey(id)) return true;
+    }
+    return false;
+  }
+
+  private static boolean isIndexedContent(@NotNull VirtualFile file) {
+    return file instanceof VirtualFileWithId && FileDocumentManager.getInstance().getCachedDocument(file) == null;
+  }
+
   public static int searchWord(@NotNull CharSequence text,
                                int startOffset,
                                int endOffset,
@@ -201,32 +361,43 @@ public class LowLevelSearchUtil {
       //noinspection AssignmentToForLoopParameter
       index = searcher.scan(text, textArray, index, endOffset);
       if (index < 0) return -1;
-      if (!searcher.isJavaIdentifier()) {
+      if (isWordOccurrence(text, textArray, startOffset, endOffset, index, searcher)) {
         return index;
       }
+    }
+    return -1;
+  }
 
-      if (index > startOffset) {
-        char c = textArray != null ? textArray[index - 1]:text.charAt(index - 1);
-        if (Character.isJavaIdentifierPart(c) && c != '$') {
-          if (!searcher.isHandleEscapeSequences() || (index < 2 || !isNotEscapedBackslash(text, textArray, startOffset, index-2))) { //escape sequence
-            continue;
-          }
-        }
-        else if (index > 0 && searcher.isHandleEscapeSequences() && isNotEscapedBackslash(text, textArray, startOffset, index-1)) {
-          continue;
+  private static boolean isWordOccurrence(@NotNull CharSequence text,
+                                          @Nullable char[] textArray,
+                                          int startOffset,
+                                          int endOffset,
+                                          int index,
+                                          @NotNull StringSearcher searcher) {
+    if (!searcher.isJavaIdentifier()) {
+      return true;
+    }
+
+    if (index > startOffset) {
+      char c = textArray != null ? textArray[index - 1]:text.charAt(index - 1);
+      if (Character.isJavaIdentifierPart(c) && c != '$') {
+        if (!searcher.isHandleEscapeSequences() || (index < 2 || !isNotEscapedBackslash(text, textArray, startOffset, index-2))) { //escape sequence
+          return false;
         }
       }
+      else if (index > 0 && searcher.isHandleEscapeSequences() && isNotEscapedBackslash(text, textArray, startOffset, index-1)) {
+        return false;
+      }
+    }
 
-      final int patternLength = searcher.getPattern().length();
-      if (index + patternLength < endOffset) {
-        char c = textArray != null ? textArray[index + patternLength]:text.charAt(index + patternLength);
-        if (Character.isJavaIdentifierPart(c) && c != '$') {
-          continue;
-        }
+    final int patternLength = searcher.getPattern().length();
+    if (index + patternLength < endOffset) {
+      char c = textArray != null ? textArray[index + patternLength]:text.charAt(index + patternLength);
+      if (Character.isJavaIdentifierPart(c) && c != '$') {
+        return false;
       }
-      return index;
     }
-    return -1;
+    return true;
   }
 
   private static boolean isNotEscapedBackslash(CharSequence text, char[] textArray, int startOffset, int index) {
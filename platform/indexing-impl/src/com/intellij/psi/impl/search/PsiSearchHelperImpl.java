@@ -38,18 +38,23 @@ import com.intellij.psi.impl.cache.impl.id.IdIndexEntry;
 import com.intellij.psi.search.*;
 import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.CommonProcessors;
+import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.Processor;
 import com.intellij.util.codeInsight.CommentUtilCore;
+import com.intellij.util.containers.ConcurrentHashMap;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.util.indexing.FileBasedIndex;
 import com.intellij.util.text.CharArrayUtil;
+import com.intellij.util.text.MultiStringSearcher;
 import com.intellij.util.text.StringSearcher;
 import gnu.trove.THashSet;
+import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -197,6 +202,10 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
 
     String text = searcher.getPattern();
     List<VirtualFile> fileSet = getFilesWithText(scope, searchContext, caseSensitively, text, progress);
+    final TIntObjectHashMap<int[]> indexedOccurrences = LowLevelSearchUtil.getIndexedOccurrences(fileSet, searcher, myManager.getProject());
+    if (indexedOccurrences != null) {
+      fileSet = filterIndexedFiles(fileSet, Collections.singletonList(indexedOccurrences));
+    }
 
     if (progress != null) {
       progress.setText(PsiBundle.message("psi.search.for.word.progress", text));
@@ -207,7 +216,8 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
       public boolean process(final PsiElement psiRoot) {
         return ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
           public Boolean compute() {
-            return LowLevelSearchUtil.processElementsContainingWordInElement(processor, psiRoot, searcher, true, progress);
+            int[] offsets = LowLevelSearchUtil.getIndexedOccurrences(indexedOccurrences, psiRoot);
+            return LowLevelSearchUtil.processElementsContainingWordInElement(processor, psiRoot, searcher, true, progress, offsets);
           }
         });
       }
@@ -646,13 +656,27 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
       searchers.put(singleRequest, new StringSearcher(singleRequest.request.word, singleRequest.request.caseSensitive, true, false));
       allWords.add(singleRequest.request.word);
     }
+    final Map<RequestWithProcessor, TIntObjectHashMap<int[]>> indexedOccurrences = getIndexedOccurrences(candidateFiles, searchers);
+    List<VirtualFile> files = new ArrayList<VirtualFile>(candidateFiles.size());
+    for (Map.Entry<VirtualFile, Collection<RequestWithProcessor>> entry : candidateFiles.entrySet()) {
+      List<TIntObjectHashMap<int[]>> fileOccurrences = new ArrayList<TIntObjectHashMap<int[]>>(entry.getValue().size());
+      for (RequestWithProcessor singleRequest : entry.getValue()) {
+        fileOccurrences.add(indexedOccurrences.get(singleRequest));
+      }
+      if (LowLevelSearchUtil.mayContainIndexedOccurrences(entry.getKey(), fileOccurrences)) {
+        files.add(entry.getKey());
+      }
+    }
 
     if (progress != null) {
       progress.setText(PsiBundle.message("psi.search.for.word.progress", getPresentableWordsDescription(allWords)));
     }
+    // files with the same set of requests share the searcher
+    final ConcurrentMap<List<RequestWithProcessor>, MultiStringSearcher> multiSearchers =
+      new ConcurrentHashMap<List<RequestWithProcessor>, MultiStringSearcher>();
 
     final AsyncFuture<Boolean> result =
-      processPsiFileRootsAsync(new ArrayList<VirtualFile>(candidateFiles.keySet()), new Processor<PsiElement>() {
+      processPsiFileRootsAsync(files, new Processor<PsiElement>() {
         @Override
         public boolean process(final PsiElement psiRoot) {
           TooManyUsagesStatus.getFrom(progress).pauseProcessingIfTooManyUsages();
@@ -661,12 +685,36 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
               return psiRoot.getContainingFile().getVirtualFile();
             }
           });
-          for (final RequestWithProcessor singleRequest : candidateFiles.get(vfile)) {
+          final Collection<RequestWithProcessor> fileRequests = candidateFiles.get(vfile);
+          if (fileRequests.size() > 1) {
+            final MultiStringSearcher multiSearcher = getMultiSearcher(fileRequests, searchers, multiSearchers);
+            final List<TextOccurenceProcessor> processors = new ArrayList<TextOccurenceProcessor>(fileRequests.size());
+            for (RequestWithProcessor singleRequest : fileRequests) {
+              processors.add(adaptProcessor(singleRequest.request, singleRequest.refProcessor));
+            }
+            return ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
+              public Boolean compute() {
+                // the scan is only skipped if all the words come from the index
+                int[][] offsets = new int[fileRequests.size()][];
+                int i = 0;
+                for (RequestWithProcessor singleRequest : fileRequests) {
+                  offsets[i] = LowLevelSearchUtil.getIndexedOccurrences(indexedOccurrences.get(singleRequest), psiRoot);
+                  if (offsets[i++] == null) {
+                    offsets = null;
+                    break;
+                  }
+                }
+                return LowLevelSearchUtil.processElementsContainingWordsInElement(processors, psiRoot, multiSearcher, true, progress, offsets);
+              }
+            });
+          }
+          for (final RequestWithProcessor singleRequest : fileRequests) {
             final StringSearcher searcher = searchers.get(singleRequest);
             final TextOccurenceProcessor adapted = adaptProcessor(singleRequest.request, singleRequest.refProcessor);
             if (!ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
               public Boolean compute() {
-                return LowLevelSearchUtil.processElementsContainingWordInElement(adapted, psiRoot, searcher, true, progress);
+                int[] offsets = LowLevelSearchUtil.getIndexedOccurrences(indexedOccurrences.get(singleRequest), psiRoot);
+                return LowLevelSearchUtil.processElementsContainingWordInElement(adapted, psiRoot, searcher, true, progress, offsets);
               }
             })) {
               return false;
@@ -687,6 +735,65 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
     });
   }
 
+  /**
+   * Looks every word up in {@link com.intellij.psi.impl.cache.impl.id.WordOffsetIndex} once for all the files it is searched in.
+   */
+  @NotNull
+  private Map<RequestWithProcessor, TIntObjectHashMap<int[]>> getIndexedOccurrences(@NotNull MultiMap<VirtualFile, RequestWithProcessor> candidateFiles,
+                                                                                    @NotNull Map<RequestWithProcessor, StringSearcher> searchers) {
+    // only case-sensitive searchers can use the index, so the requests for the same word share the lookup
+    MultiMap<String, VirtualFile> wordFiles = new MultiMap<String, VirtualFile>();
+    for (Map.Entry<VirtualFile, Collection<RequestWithProcessor>> entry : candidateFiles.entrySet()) {
+      for (RequestWithProcessor singleRequest : entry.getValue()) {
+        if (singleRequest.request.caseSensitive) {
+          wordFiles.putValue(singleRequest.request.word, entry.getKey());
+        }
+      }
+    }
+    Map<String, TIntObjectHashMap<int[]>> wordOccurrences = new HashMap<String, TIntObjectHashMap<int[]>>();
+    Map<RequestWithProcessor, TIntObjectHashMap<int[]>> result = new HashMap<RequestWithProcessor, TIntObjectHashMap<int[]>>();
+    for (Map.Entry<RequestWithProcessor, StringSearcher> entry : searchers.entrySet()) {
+      PsiSearchRequest request = entry.getKey().request;
+      if (!request.caseSensitive) continue;
+      if (!wordOccurrences.containsKey(request.word)) {
+        Set<VirtualFile> files = new THashSet<VirtualFile>(wordFiles.get(request.word));
+        wordOccurrences.put(request.word, LowLevelSearchUtil.getIndexedOccurrences(files, entry.getValue(), myManager.getProject()));
+      }
+      TIntObjectHashMap<int[]> occurrences = wordOccurrences.get(request.word);
+      if (occurrences != null) {
+        result.put(entry.getKey(), occurrences);
+      }
+    }
+    return result;
+  }
+
+  @NotNull
+  private static List<VirtualFile> filterIndexedFiles(@NotNull List<VirtualFile> files, @NotNull List<TIntObjectHashMap<int[]>> occurrences) {
+    List<VirtualFile> result = new ArrayList<VirtualFile>(files.size());
+    for (VirtualFile file : files) {
+      if (LowLevelSearchUtil.mayContainIndexedOccurrences(file, occurrences)) {
+        result.add(file);
+      }
+    }
+    return result;
+  }
+
+  @NotNull
+  private static MultiStringSearcher getMultiSearcher(@NotNull Collection<RequestWithProcessor> requests,
+                                                      @NotNull Map<RequestWithProcessor, StringSearcher> searchers,
+                                                      @NotNull ConcurrentMap<List<RequestWithProcessor>, MultiStringSearcher> cache) {
+    List<RequestWithProcessor> key = new ArrayList<RequestWithProcessor>(requests);
+    MultiStringSearcher searcher = cache.get(key);
+    if (searcher == null) {
+      List<StringSearcher> wordSearchers = new ArrayList<StringSearcher>(key.size());
+      for (RequestWithProcessor request : key) {
+        wordSearchers.add(searchers.get(request));
+      }
+      searcher = ConcurrencyUtil.cacheOrGet(cache, key, new MultiStringSearcher(wordSearchers));
+    }
+    return searcher;
+  }
+
   @NotNull
   private static String getPresentableWordsDescription(@NotNull Set<String> allWords) {
     final StringBuilder result = new StringBuilder();
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.completion.impl;
+
+import com.intellij.codeInsight.completion.CompletionContributor;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.LatencyStatistics;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Time each completion contributor spends in {@link CompletionContributor#fillCompletionVariants}, including the contributors
+ * it runs itself via {@link com.intellij.codeInsight.completion.CompletionResultSet#runRemainingContributors},
+ * recorded per contributor class. Cancelled runs are not recorded.
+ */
+public final class CompletionLatencyStatistics extends LatencyStatistics {
+  private static final CompletionLatencyStatistics ourInstance = new CompletionLatencyStatistics();
+
+  private CompletionLatencyStatistics() {
+    super("contributor");
+  }
+
+  @NotNull
+  public static CompletionLatencyStatistics getInstance() {
+    return ourInstance;
+  }
+
+  void contributorFinished(@NotNull CompletionContributor contributor, long nanos) {
+    addSample(getContributorName(contributor), nanos / 1000000);
+  }
+
+  @NotNull
+  public static String getContributorName(@NotNull CompletionContributor contributor) {
+    return StringUtil.getShortName(contributor.getClass().getName());
+  }
+}
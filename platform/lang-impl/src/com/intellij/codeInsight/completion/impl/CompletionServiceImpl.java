@@ -17,24 +17,31 @@ package com.intellij.codeInsight.completion.impl;
 
 import com.intellij.codeInsight.completion.*;
 import com.intellij.codeInsight.lookup.*;
+import com.intellij.concurrency.JobLauncher;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressWrapper;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.project.ProjectManagerAdapter;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.patterns.ElementPattern;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.Weigher;
 import com.intellij.psi.WeighingService;
 import com.intellij.psi.impl.DebugUtil;
 import com.intellij.util.Consumer;
+import com.intellij.util.Processor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author peter
@@ -85,7 +92,7 @@ public class CompletionServiceImpl extends CompletionService{
     final PsiElement position = parameters.getPosition();
     final String prefix = CompletionData.findPrefixStatic(position, parameters.getOffset());
     final String textBeforePosition = parameters.getPosition().getContainingFile().getText().substring(0, parameters.getOffset());
-    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    ProgressIndicator indicator = ProgressWrapper.unwrap(ProgressManager.getInstance().getProgressIndicator());
     if (!(indicator instanceof CompletionProgressIndicator)) {
       throw new AssertionError("createResultSet may be invoked only from completion thread: " + indicator + "!=" + getCurrentCompletion() + "; phase set at " + ourPhaseTrace);
     }
@@ -95,6 +102,89 @@ public class CompletionServiceImpl extends CompletionService{
     return new CompletionResultSetImpl(consumer, textBeforePosition, matcher, contributor,parameters, sorter, process, null);
   }
 
+  @Override
+  public void getVariantsFromContributors(final CompletionParameters parameters,
+                                          @Nullable final CompletionContributor from,
+                                          final Consumer<CompletionResult> consumer) {
+    final List<CompletionContributor> all = CompletionContributor.forParameters(parameters);
+    final boolean dumb = DumbService.getInstance(parameters.getPosition().getProject()).isDumb();
+    final List<CompletionContributor> contributors = new ArrayList<CompletionContributor>();
+    for (int i = all.indexOf(from) + 1; i < all.size(); i++) {
+      final CompletionContributor contributor = all.get(i);
+      if (!dumb || DumbService.isDumbAware(contributor)) {
+        contributors.add(contributor);
+      }
+    }
+
+    // contributors run by other contributors and those in the worker threads below see a wrapped indicator and stay sequential
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    if (from == null && contributors.size() > 1 && indicator instanceof CompletionProgressIndicator &&
+        Registry.is("completion.concurrent.contributors")) {
+      fillVariantsConcurrently(parameters, contributors, consumer, indicator);
+      return;
+    }
+
+    for (CompletionContributor contributor : contributors) {
+      final CompletionResultSet result = createResultSet(parameters, consumer, contributor);
+      fillVariants(contributor, parameters, result);
+      if (result.isStopped()) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Runs the contributors in parallel, passing their results to the consumer in the order of the contributors
+   * so that the lookup arranger gets the same sequence as with the sequential run. The results of the first unfinished contributor
+   * are passed as they arrive, those of the following ones are buffered until all the preceding contributors are done.
+   * The contributors after one which has stopped are not started anymore, and the results of the running ones are dropped.
+   * A contributor is considered stopped as soon as it calls {@link CompletionResultSet#stopHere()}, which also happens
+   * when it runs the remaining contributors itself; those of them which have already been started in parallel do their work twice.
+   */
+  private void fillVariantsConcurrently(final CompletionParameters parameters,
+                                        final List<CompletionContributor> contributors,
+                                        Consumer<CompletionResult> consumer,
+                                        ProgressIndicator indicator) {
+    final OrderedResults results = new OrderedResults(contributors.size(), consumer);
+    List<Integer> indices = new ArrayList<Integer>(contributors.size());
+    for (int i = 0; i < contributors.size(); i++) {
+      indices.add(i);
+    }
+    boolean completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(indices, indicator, true, new Processor<Integer>() {
+      @Override
+      public boolean process(final Integer index) {
+        if (results.isObsolete(index)) {
+          return true;
+        }
+        CompletionContributor contributor = contributors.get(index);
+        CompletionResultSetImpl result = (CompletionResultSetImpl)createResultSet(parameters, new Consumer<CompletionResult>() {
+          @Override
+          public void consume(CompletionResult completionResult) {
+            results.add(index, completionResult);
+          }
+        }, contributor);
+        result.myStopListener = new Runnable() {
+          @Override
+          public void run() {
+            results.stopped(index);
+          }
+        };
+        fillVariants(contributor, parameters, result);
+        results.finished(index, result.isStopped());
+        return true;
+      }
+    });
+    if (!completed) {
+      throw new ProcessCanceledException();
+    }
+  }
+
+  private static void fillVariants(CompletionContributor contributor, CompletionParameters parameters, CompletionResultSet result) {
+    long start = System.nanoTime();
+    contributor.fillCompletionVariants(parameters, result);
+    CompletionLatencyStatistics.getInstance().contributorFinished(contributor, System.nanoTime() - start);
+  }
+
   @Override
   public CompletionProgressIndicator getCurrentCompletion() {
     if (isPhase(CompletionPhase.BgCalculation.class, CompletionPhase.ItemsCalculated.class, CompletionPhase.CommittingDocuments.class,
@@ -104,12 +194,64 @@ public class CompletionServiceImpl extends CompletionService{
     return null;
   }
 
+  private static class OrderedResults {
+    private final Consumer<CompletionResult> myConsumer;
+    private final List<List<CompletionResult>> myPending = new ArrayList<List<CompletionResult>>();
+    private final boolean[] myFinished;
+    private int myCurrent;
+    private int myStoppedAt;
+
+    private OrderedResults(int count, Consumer<CompletionResult> consumer) {
+      myConsumer = consumer;
+      myFinished = new boolean[count];
+      myStoppedAt = count;
+      for (int i = 0; i < count; i++) {
+        myPending.add(new ArrayList<CompletionResult>());
+      }
+    }
+
+    private synchronized boolean isObsolete(int index) {
+      return index > myStoppedAt;
+    }
+
+    private synchronized void add(int index, CompletionResult result) {
+      if (index > myStoppedAt) return;
+      if (index == myCurrent) {
+        myConsumer.consume(result);
+      }
+      else {
+        myPending.get(index).add(result);
+      }
+    }
+
+    private synchronized void stopped(int index) {
+      myStoppedAt = Math.min(myStoppedAt, index);
+    }
+
+    private synchronized void finished(int index, boolean stopped) {
+      myFinished[index] = true;
+      if (stopped) {
+        stopped(index);
+      }
+      while (myCurrent < myStoppedAt && myFinished[myCurrent]) {
+        myCurrent++;
+        if (myCurrent < myFinished.length) {
+          for (CompletionResult result : myPending.get(myCurrent)) {
+            myConsumer.consume(result);
+          }
+          myPending.set(myCurrent, null);
+        }
+      }
+    }
+  }
+
   private static class CompletionResultSetImpl extends CompletionResultSet {
     private final String myTextBeforePosition;
     private final CompletionParameters myParameters;
     private final CompletionSorterImpl mySorter;
     private final CompletionProgressIndicator myProcess;
     @Nullable private final CompletionResultSetImpl myOriginal;
+    @Nullable private Runnable myStopListener;
 
     public CompletionResultSetImpl(final Consumer<CompletionResult> consumer, final String textBeforePosition,
                                    final PrefixMatcher prefixMatcher,
@@ -149,6 +291,9 @@ public class CompletionServiceImpl extends CompletionService{
       if (myOriginal != null) {
         myOriginal.stopHere();
       }
+      if (myStopListener != null) {
+        myStopListener.run();
+      }
     }
 
     @Override
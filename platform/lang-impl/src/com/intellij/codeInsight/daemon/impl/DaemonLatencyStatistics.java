@@ -0,0 +1,82 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.daemon.impl;
+
+import com.intellij.codeHighlighting.TextEditorHighlightingPass;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.LatencyStatistics;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+
+/**
+ * Time from a document change to the moment each highlighting pass has applied its results for the changed text,
+ * recorded per pass class. The time the EDT spends on updating the highlighters of one pass result is recorded as well,
+ * under {@link #MARKUP_UPDATE}.
+ */
+public final class DaemonLatencyStatistics extends LatencyStatistics {
+  public static final String MARKUP_UPDATE = "<markup update>";
+
+  private static final Key<DocumentChange> LAST_CHANGE = Key.create("DAEMON_LATENCY_LAST_CHANGE");
+  private static final DaemonLatencyStatistics ourInstance = new DaemonLatencyStatistics();
+
+  private DaemonLatencyStatistics() {
+    super("pass");
+  }
+
+  @NotNull
+  public static DaemonLatencyStatistics getInstance() {
+    return ourInstance;
+  }
+
+  static void documentChanged(@NotNull Document document) {
+    document.putUserData(LAST_CHANGE, new DocumentChange(System.nanoTime()));
+  }
+
+  /**
+   * Records the latency of the pass if it is the first pass of its kind applied since the last change of its document.
+   * Must be called in the EDT after the pass has been applied for the current text of the document.
+   */
+  void passApplied(@NotNull TextEditorHighlightingPass pass) {
+    Document document = pass.getDocument();
+    DocumentChange change = document == null ? null : document.getUserData(LAST_CHANGE);
+    if (change == null) return;
+    String passName = getPassName(pass);
+    if (!change.appliedPasses.add(passName)) return;
+    addSample(passName, (System.nanoTime() - change.nanos) / 1000000);
+  }
+
+  void markupUpdated(long nanos) {
+    addSample(MARKUP_UPDATE, nanos / 1000000);
+  }
+
+  @NotNull
+  static String getPassName(@NotNull TextEditorHighlightingPass pass) {
+    return StringUtil.getShortName(pass.getClass().getName());
+  }
+
+  private static class DocumentChange {
+    private final long nanos;
+    private final Set<String> appliedPasses = new THashSet<String>();
+
+    private DocumentChange(long nanos) {
+      this.nanos = nanos;
+    }
+  }
+}
@@ -172,6 +172,7 @@ public class DaemonListeners implements Disposable {
         if (!worthBothering(document, project)) {
           return; //no need to stop daemon if something happened in the console
         }
+        DaemonLatencyStatistics.documentChanged(document);
         stopDaemon(true, "Document change");
         UpdateHighlightersUtil.updateHighlightersByTyping(myProject, e);
       }
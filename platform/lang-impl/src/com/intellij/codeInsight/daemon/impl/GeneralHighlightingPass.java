@@ -27,6 +27,7 @@ import com.intellij.codeInsight.problems.ProblemImpl;
 import com.intellij.codeInsight.problems.WolfTheProblemSolverImpl;
 import com.intellij.concurrency.JobLauncher;
 import com.intellij.injected.editor.DocumentWindow;
+import com.intellij.lang.ASTNode;
 import com.intellij.lang.Language;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.lang.injection.InjectedLanguageManager;
@@ -60,6 +61,8 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.problems.Problem;
 import com.intellij.problems.WolfTheProblemSolver;
 import com.intellij.psi.*;
+import com.intellij.psi.impl.source.tree.ConcurrentChameleonExpander;
+import com.intellij.psi.impl.source.tree.FileElement;
 import com.intellij.psi.impl.source.tree.injected.InjectedLanguageUtil;
 import com.intellij.psi.impl.source.tree.injected.Place;
 import com.intellij.psi.search.PsiTodoSearchHelper;
@@ -190,6 +193,18 @@ public class GeneralHighlightingPass extends ProgressableTextEditorHighlightingP
     return old;
   }
 
+  // the caret if it is visible, otherwise the user has scrolled away from it and the priority range is what they look at
+  @NotNull
+  private TextRange getSortAnchor() {
+    if (myEditor != null) {
+      int caretOffset = myEditor.getCaretModel().getOffset();
+      if (myPriorityRange.containsOffset(caretOffset)) {
+        return new TextRange(caretOffset, caretOffset);
+      }
+    }
+    return myPriorityRange;
+  }
+
   @Override
   protected void collectInformationWithProgress(final ProgressIndicator progress) {
     final Set<HighlightInfo> gotHighlights = new THashSet<HighlightInfo>(100);
@@ -203,8 +218,12 @@ public class GeneralHighlightingPass extends ProgressableTextEditorHighlightingP
       final HighlightVisitor[] filteredVisitors = filterVisitors(highlightVisitors, myFile);
       List<ProperTextRange> insideRanges = new ArrayList<ProperTextRange>();
       List<ProperTextRange> outsideRanges = new ArrayList<ProperTextRange>();
+      expandChameleonsConcurrently(progress);
       Divider.divideInsideAndOutside(myFile, myStartOffset, myEndOffset, myPriorityRange, inside, insideRanges, outside,
                                      outsideRanges, false, FILE_FILTER);
+      if (!myPriorityRange.isEmpty() && VisibleHighlightingPassFactory.isViewportFirst(myDocument)) {
+        Divider.sortByDistance(outside, outsideRanges, myPriorityRange, getSortAnchor());
+      }
 
       setProgressLimit((long)(inside.size()+outside.size()));
 
@@ -301,6 +320,17 @@ public class GeneralHighlightingPass extends ProgressableTextEditorHighlightingP
     myHighlights.addAll(gotHighlights);
   }
 
+  // the traversal below would otherwise parse all lazy code blocks of a huge file one by one
+  private void expandChameleonsConcurrently(@NotNull ProgressIndicator progress) {
+    if (!isWholeFileHighlighting()) return;
+    ASTNode node = myFile.getNode();
+    if (node instanceof FileElement && ConcurrentChameleonExpander.isEnabledFor((FileElement)node)) {
+      if (!ConcurrentChameleonExpander.expandConcurrently((FileElement)node, progress)) {
+        throw new ProcessCanceledException();
+      }
+    }
+  }
+
   private void getInjectedPsiFiles(@NotNull final List<PsiElement> elements1,
                                    @NotNull final List<PsiElement> elements2,
                                    @NotNull final ProgressIndicator progress,
@@ -654,6 +684,8 @@ public class GeneralHighlightingPass extends ProgressableTextEditorHighlightingP
             }
             holder.clear();
 
+            // the results are not memoized per element: they depend on what the element resolves to elsewhere in the file,
+            // and the visitors register references in the RefCountHolder as they go, so all the elements in the dirty range are visited
             for (final HighlightVisitor visitor : visitors) {
               try {
                 visitor.visit(element);
@@ -27,6 +27,7 @@ import com.intellij.codeInspection.ex.*;
 import com.intellij.codeInspection.ui.InspectionToolPresentation;
 import com.intellij.concurrency.JobLauncher;
 import com.intellij.injected.editor.DocumentWindow;
+import com.intellij.lang.ASTNode;
 import com.intellij.lang.Language;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.lang.injection.InjectedLanguageManager;
@@ -48,11 +49,13 @@ import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.util.*;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
 import com.intellij.profile.codeInspection.InspectionProjectProfileManagerImpl;
 import com.intellij.profile.codeInspection.SeverityProvider;
 import com.intellij.psi.*;
+import com.intellij.psi.impl.source.tree.TreeCursor;
 import com.intellij.psi.impl.source.tree.injected.InjectedLanguageUtil;
 import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.Function;
@@ -64,6 +67,7 @@ import com.intellij.util.ui.UIUtil;
 import com.intellij.xml.util.XmlStringUtil;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
+import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -94,6 +98,7 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
   private final SeverityRegistrar mySeverityRegistrar;
   private final InspectionProfileWrapper myProfileWrapper;
   private boolean myFailFastOnAcquireReadAction;
+  private final LocalInspectionsStatistics myStatistics = new LocalInspectionsStatistics();
 
   public LocalInspectionsPass(@NotNull PsiFile file,
                               @Nullable Document document,
@@ -164,6 +169,22 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
     }
   }
 
+  /**
+   * @return short names of the tools which have reported problems in the file or in the fragments injected into it
+   */
+  @NotNull
+  public Set<String> getToolsWithProblems() {
+    Set<String> tools = new THashSet<String>();
+    for (List<InspectionResult> resultList : result.values()) {
+      for (InspectionResult inspectionResult : resultList) {
+        if (!inspectionResult.foundProblems.isEmpty()) {
+          tools.add(inspectionResult.tool.getShortName());
+        }
+      }
+    }
+    return tools;
+  }
+
   private void addDescriptors(@NotNull LocalInspectionToolWrapper toolWrapper,
                               @NotNull ProblemDescriptor descriptor,
                               @NotNull GlobalInspectionContextImpl context) {
@@ -231,11 +252,16 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
 
     List<InspectionContext> init =
       visitPriorityElementsAndInit(tools, iManager, isOnTheFly, indicator, inside, session, toolWrappers, checkDumbAwareness);
-    visitRestElementsAndCleanup(indicator, outside, session, init);
+    visitRestElementsAndCleanup(indicator, outside, session, init, isOnTheFly);
     inspectInjectedPsi(outside, isOnTheFly, indicator, iManager, false, checkDumbAwareness, toolWrappers);
 
     indicator.checkCanceled();
 
+    LocalInspectionsStatistics.getInstance().mergeFrom(myStatistics);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Local inspections of " + myFile.getName() + ":\n" + myStatistics.dump());
+    }
+
     myInfos = new ArrayList<HighlightInfo>();
     addHighlightsFromResults(myInfos, indicator);
   }
@@ -318,12 +344,13 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
                                                                @NotNull List<LocalInspectionToolWrapper> wrappers,
                                                                boolean checkDumbAwareness) {
     final List<InspectionContext> init = new ArrayList<InspectionContext>();
+    final TObjectIntHashMap<String> elementCounts = countByLanguage(elements);
     List<Map.Entry<LocalInspectionToolWrapper, Collection<String>>> entries = new ArrayList<Map.Entry<LocalInspectionToolWrapper, Collection<String>>>(tools.entrySet());
     Processor<Map.Entry<LocalInspectionToolWrapper, Collection<String>>> processor =
       new Processor<Map.Entry<LocalInspectionToolWrapper, Collection<String>>>() {
         @Override
         public boolean process(final Map.Entry<LocalInspectionToolWrapper, Collection<String>> pair) {
-          return doVisitElement(pair.getKey(), pair.getValue(), iManager, isOnTheFly, indicator, elements, session, init);
+          return doVisitElement(pair.getKey(), pair.getValue(), iManager, isOnTheFly, indicator, elements, elementCounts, session, init);
         }
       };
     boolean result = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(entries, indicator, myFailFastOnAcquireReadAction, processor);
@@ -338,6 +365,7 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
                                  final boolean isOnTheFly,
                                  @NotNull final ProgressIndicator indicator,
                                  @NotNull final List<PsiElement> elements,
+                                 @NotNull TObjectIntHashMap<String> elementCounts,
                                  @NotNull final LocalInspectionToolSession session,
                                  @NotNull List<InspectionContext> init) {
     indicator.checkCanceled();
@@ -354,10 +382,13 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
           }
         }
     };
+    LocalInspectionsStatistics.ToolStatistics statistics = myStatistics.getOrCreate(toolWrapper.getShortName());
+    long start = LocalInspectionsStatistics.currentThreadCpuNanos();
     PsiElementVisitor visitor = InspectionEngine.createVisitorAndAcceptElements(tool, holder, isOnTheFly, session, elements, languages);
+    statistics.visited(LocalInspectionsStatistics.currentThreadCpuNanos() - start, countVisited(elementCounts, languages));
 
     synchronized (init) {
-      init.add(new InspectionContext(toolWrapper, holder, visitor, languages));
+      init.add(new InspectionContext(toolWrapper, holder, visitor, languages, statistics));
     }
     advanceProgress(1);
 
@@ -368,19 +399,64 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
     return true;
   }
 
-  private void visitRestElementsAndCleanup(@NotNull final ProgressIndicator indicator,
-                                           @NotNull final List<PsiElement> elements,
-                                           @NotNull final LocalInspectionToolSession session,
-                                           @NotNull List<InspectionContext> init) {
+  private void visitRestElementsAndCleanup(@NotNull ProgressIndicator indicator,
+                                           @NotNull List<PsiElement> elements,
+                                           @NotNull LocalInspectionToolSession session,
+                                           @NotNull List<InspectionContext> init,
+                                           boolean isOnTheFly) {
+    TObjectIntHashMap<String> elementCounts = countByLanguage(elements);
+    // tools which have already used up their time budget inside the priority range go last, so they don't hold up the others
+    List<InspectionContext> deferred = new ArrayList<InspectionContext>();
+    long budget = LocalInspectionsStatistics.getToolTimeBudget() * 1000000L;
+    if (budget > 0) {
+      List<InspectionContext> inBudget = new ArrayList<InspectionContext>(init.size());
+      for (InspectionContext context : init) {
+        if (context.statistics.getCpuNanos() > budget) {
+          context.statistics.deferred();
+          deferred.add(context);
+        }
+        else {
+          inBudget.add(context);
+        }
+      }
+      init = inBudget;
+    }
+    visitRestElements(indicator, elements, elementCounts, session, init);
+    if (deferred.isEmpty()) return;
+
+    if (isOnTheFly) {
+      // the results are applied all together only after the deferred tools finish, so show those of the others in the editor now
+      for (InspectionContext context : init) {
+        for (ProblemDescriptor descriptor : context.holder.getResults()) {
+          addDescriptorIncrementally(descriptor, context.tool, indicator);
+        }
+      }
+    }
+    visitRestElements(indicator, elements, elementCounts, session, deferred);
+  }
+
+  private void visitRestElements(@NotNull final ProgressIndicator indicator,
+                                 @NotNull final List<PsiElement> elements,
+                                 @NotNull final TObjectIntHashMap<String> elementCounts,
+                                 @NotNull final LocalInspectionToolSession session,
+                                 @NotNull List<InspectionContext> contexts) {
+    if (Registry.is("daemon.local.inspection.fused.visitors")) {
+      visitRestElementsFused(indicator, elements, elementCounts, session, contexts);
+      return;
+    }
     Processor<InspectionContext> processor =
       new Processor<InspectionContext>() {
         @Override
         public boolean process(InspectionContext context) {
           indicator.checkCanceled();
           ApplicationManager.getApplication().assertReadAccessAllowed();
+          long start = LocalInspectionsStatistics.currentThreadCpuNanos();
           InspectionEngine.acceptElements(elements, context.visitor, context.languageIds);
           advanceProgress(1);
           context.tool.getTool().inspectionFinished(session, context.holder);
+          context.statistics.visited(LocalInspectionsStatistics.currentThreadCpuNanos() - start,
+                                     countVisited(elementCounts, context.languageIds));
+          context.statistics.finished(context.holder.getResultCount());
 
           if (context.holder.hasResults()) {
             appendDescriptors(myFile, context.holder.getResults(), context.tool);
@@ -388,12 +464,140 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
           return true;
         }
       };
-    boolean result = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(init, indicator, myFailFastOnAcquireReadAction, processor);
+    boolean result = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(contexts, indicator, myFailFastOnAcquireReadAction, processor);
     if (!result) {
       throw new ProcessCanceledException();
     }
   }
 
+  /**
+   * Splits the tools into a group per processor and walks the elements once per group, passing each element to the visitors
+   * of the group's tools registered for its language, in the group order.
+   * The CPU time of a walk can't be split between the tools, so it is recorded for the group (see {@link #getGroupName}),
+   * while the tools get their own element and problem counts and the time of {@code inspectionFinished}.
+   */
+  private void visitRestElementsFused(@NotNull final ProgressIndicator indicator,
+                                      @NotNull final List<PsiElement> elements,
+                                      @NotNull final TObjectIntHashMap<String> elementCounts,
+                                      @NotNull final LocalInspectionToolSession session,
+                                      @NotNull List<InspectionContext> contexts) {
+    if (contexts.isEmpty()) return;
+    List<InspectionContext> sorted = new ArrayList<InspectionContext>(contexts);
+    // the same tools make the same groups in every file, so that the statistics of groups add up
+    Collections.sort(sorted, new Comparator<InspectionContext>() {
+      @Override
+      public int compare(InspectionContext o1, InspectionContext o2) {
+        return o1.tool.getShortName().compareTo(o2.tool.getShortName());
+      }
+    });
+    int groupCount = Math.min(sorted.size(), Runtime.getRuntime().availableProcessors());
+    List<List<InspectionContext>> groups = new ArrayList<List<InspectionContext>>(groupCount);
+    for (int i = 0; i < groupCount; i++) {
+      groups.add(new ArrayList<InspectionContext>());
+    }
+    for (int i = 0; i < sorted.size(); i++) {
+      groups.get(i % groupCount).add(sorted.get(i));
+    }
+    Processor<List<InspectionContext>> processor = new Processor<List<InspectionContext>>() {
+      @Override
+      public boolean process(List<InspectionContext> group) {
+        indicator.checkCanceled();
+        ApplicationManager.getApplication().assertReadAccessAllowed();
+        LocalInspectionsStatistics.ToolStatistics groupStatistics = myStatistics.getOrCreate(getGroupName(group));
+        long start = LocalInspectionsStatistics.currentThreadCpuNanos();
+        acceptElements(elements, group);
+        groupStatistics.visited(LocalInspectionsStatistics.currentThreadCpuNanos() - start, elements.size());
+        int problemCount = 0;
+        for (InspectionContext context : group) {
+          advanceProgress(1);
+          start = LocalInspectionsStatistics.currentThreadCpuNanos();
+          context.tool.getTool().inspectionFinished(session, context.holder);
+          context.statistics.visited(LocalInspectionsStatistics.currentThreadCpuNanos() - start,
+                                     countVisited(elementCounts, context.languageIds));
+          context.statistics.finished(context.holder.getResultCount());
+          problemCount += context.holder.getResultCount();
+
+          if (context.holder.hasResults()) {
+            appendDescriptors(myFile, context.holder.getResults(), context.tool);
+          }
+        }
+        groupStatistics.finished(problemCount);
+        return true;
+      }
+    };
+    if (!JobLauncher.getInstance().invokeConcurrentlyUnderProgress(groups, indicator, myFailFastOnAcquireReadAction, processor)) {
+      throw new ProcessCanceledException();
+    }
+  }
+
+  @NotNull
+  private static String getGroupName(@NotNull List<InspectionContext> group) {
+    StringBuilder name = new StringBuilder("fused(");
+    for (InspectionContext context : group) {
+      if (name.length() > "fused(".length()) name.append(", ");
+      name.append(context.tool.getShortName());
+    }
+    return name.append(')').toString();
+  }
+
+  private static void acceptElements(@NotNull List<PsiElement> elements, @NotNull List<InspectionContext> contexts) {
+    Map<String, PsiElementVisitor[]> visitorsByLanguage = new THashMap<String, PsiElementVisitor[]>();
+    //noinspection ForLoopReplaceableByForEach
+    for (int i = 0, elementsSize = elements.size(); i < elementsSize; i++) {
+      PsiElement element = elements.get(i);
+      String languageId = element.getLanguage().getID();
+      PsiElementVisitor[] visitors = visitorsByLanguage.get(languageId);
+      if (visitors == null) {
+        List<PsiElementVisitor> interested = new ArrayList<PsiElementVisitor>(contexts.size());
+        for (InspectionContext context : contexts) {
+          if (context.languageIds == null || context.languageIds.contains(languageId)) {
+            interested.add(context.visitor);
+          }
+        }
+        visitors = interested.toArray(new PsiElementVisitor[interested.size()]);
+        visitorsByLanguage.put(languageId, visitors);
+      }
+      for (PsiElementVisitor visitor : visitors) {
+        element.accept(visitor);
+      }
+      ProgressManager.checkCanceled();
+    }
+  }
+
+  /**
+   * @return the number of elements of each language
+   */
+  @NotNull
+  private static TObjectIntHashMap<String> countByLanguage(@NotNull List<PsiElement> elements) {
+    TObjectIntHashMap<String> counts = new TObjectIntHashMap<String>();
+    //noinspection ForLoopReplaceableByForEach
+    for (int i = 0, elementsSize = elements.size(); i < elementsSize; i++) {
+      String languageId = elements.get(i).getLanguage().getID();
+      if (!counts.increment(languageId)) {
+        counts.put(languageId, 1);
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * @return the number of elements {@link InspectionEngine#acceptElements} passes to a visitor registered for the given languages
+   */
+  private static int countVisited(@NotNull TObjectIntHashMap<String> elementCounts, @Nullable Collection<String> languageIds) {
+    int count = 0;
+    if (languageIds == null) {
+      for (int languageCount : elementCounts.getValues()) {
+        count += languageCount;
+      }
+    }
+    else {
+      for (String languageId : languageIds) {
+        count += elementCounts.get(languageId);
+      }
+    }
+    return count;
+  }
+
   void inspectInjectedPsi(@NotNull final List<PsiElement> elements,
                           final boolean onTheFly,
                           @NotNull final ProgressIndicator indicator,
@@ -687,39 +891,81 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
     }
   }
 
+  /**
+   * @return the elements of all the inspected PSI roots of the file, children before parents, in the order
+   *         a {@link PsiRecursiveElementVisitor} following {@link PsiElement#getFirstChild()} and {@link PsiElement#getNextSibling()} reaches them
+   */
   @NotNull
-  private static List<PsiElement> getElementsFrom(@NotNull PsiFile file) {
+  public static List<PsiElement> getElementsFrom(@NotNull PsiFile file) {
     final FileViewProvider viewProvider = file.getViewProvider();
+    // the roots of a multi-language file may share elements
     final Set<PsiElement> result = new LinkedHashSet<PsiElement>();
-    final PsiElementVisitor visitor = new PsiRecursiveElementVisitor() {
-      @Override public void visitElement(PsiElement element) {
-        ProgressManager.checkCanceled();
-        PsiElement child = element.getFirstChild();
-        if (child == null) {
-          // leaf element
-        }
-        else {
-          // composite element
-          while (child != null) {
-            child.accept(this);
-            result.add(child);
-
-            child = child.getNextSibling();
-          }
-        }
-      }
-    };
+    List<PsiElement> rootElements = new ArrayList<PsiElement>();
+    TreeCursor cursor = null;
     for (Language language : viewProvider.getLanguages()) {
       final PsiFile psiRoot = viewProvider.getPsi(language);
       if (psiRoot == null || !HighlightLevelUtil.shouldInspect(psiRoot)) {
         continue;
       }
-      psiRoot.accept(visitor);
-      result.add(psiRoot);
+      ASTNode rootNode = psiRoot.getNode();
+      rootElements.clear();
+      if (rootNode != null && rootNode.getPsi() == psiRoot) {
+        if (cursor == null) {
+          cursor = TreeCursor.postOrder(rootNode);
+        }
+        else {
+          cursor.reset(rootNode);
+        }
+        if (!collectByAst(cursor, rootNode, rootElements)) {
+          rootElements.clear();
+        }
+      }
+      if (rootElements.isEmpty()) {
+        collectByPsi(psiRoot, rootElements);
+      }
+      result.addAll(rootElements);
     }
     return new ArrayList<PsiElement>(result);
   }
 
+  /**
+   * Collects the PSI of the nodes in post-order without recursion and child arrays. Gives up as soon as the PSI navigation
+   * disagrees with the tree, so that the result is the same as that of {@link #collectByPsi}: for every node it is checked
+   * that the PSI navigation from its parent or previous sibling leads to its PSI, and that the navigation ends where the tree does.
+   *
+   * @return false if some element is not reached by the PSI navigation the way its node is reached in the tree
+   */
+  private static boolean collectByAst(@NotNull TreeCursor cursor, @NotNull ASTNode rootNode, @NotNull List<PsiElement> result) {
+    for (ASTNode node = cursor.next(); node != null; node = cursor.next()) {
+      ProgressManager.checkCanceled();
+      PsiElement element = node.getPsi();
+      if (element == null) return false;
+      if (node.getFirstChildNode() == null && element.getFirstChild() != null) return false;
+      if (node != rootNode) {
+        ASTNode prev = node.getTreePrev();
+        PsiElement reached = prev == null ? node.getTreeParent().getPsi().getFirstChild() : prev.getPsi().getNextSibling();
+        if (reached != element) return false;
+        if (node.getTreeNext() == null && element.getNextSibling() != null) return false;
+      }
+      result.add(element);
+    }
+    return true;
+  }
+
+  private static void collectByPsi(@NotNull PsiFile psiRoot, @NotNull final List<PsiElement> result) {
+    psiRoot.accept(new PsiRecursiveElementVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        ProgressManager.checkCanceled();
+        for (PsiElement child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+          child.accept(this);
+          result.add(child);
+        }
+      }
+    });
+    result.add(psiRoot);
+  }
+
 
   @NotNull
   private List<LocalInspectionToolWrapper> getHighlightingLocalInspectionTools(@NotNull InspectionProfileWrapper profile, PsiElement element) {
@@ -812,16 +1058,19 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
     private InspectionContext(@NotNull LocalInspectionToolWrapper tool,
                               @NotNull ProblemsHolder holder,
                               @NotNull PsiElementVisitor visitor,
-                              @Nullable Collection<String> languageIds) {
+                              @Nullable Collection<String> languageIds,
+                              @NotNull LocalInspectionsStatistics.ToolStatistics statistics) {
       this.tool = tool;
       this.holder = holder;
       this.visitor = visitor;
       this.languageIds = languageIds;
+      this.statistics = statistics;
     }
 
     @NotNull final LocalInspectionToolWrapper tool;
     @NotNull final ProblemsHolder holder;
     @NotNull final PsiElementVisitor visitor;
     @Nullable final Collection<String> languageIds;
+    @NotNull final LocalInspectionsStatistics.ToolStatistics statistics;
   }
 }
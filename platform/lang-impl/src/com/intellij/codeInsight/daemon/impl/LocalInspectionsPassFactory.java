@@ -59,7 +59,7 @@ public class LocalInspectionsPassFactory extends AbstractProjectComponent implem
     if (textRange == null || !InspectionProjectProfileManager.getInstance(file.getProject()).isProfileLoaded()){
       return new ProgressableTextEditorHighlightingPass.EmptyPass(myProject, editor.getDocument());
     }
-    TextRange visibleRange = VisibleHighlightingPassFactory.calculateVisibleRange(editor);
+    TextRange visibleRange = VisibleHighlightingPassFactory.calculatePriorityRange(editor);
     return new MyLocalInspectionsPass(file, editor.getDocument(), textRange, visibleRange);
   }
 
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.daemon.impl;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.util.containers.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CPU time spent, PSI elements visited and problems reported by each local inspection tool.
+ * {@link LocalInspectionsPass} collects one instance per file and merges it into the application service {@link #getInstance()},
+ * which can be dumped as a table with {@link #dump()}.
+ */
+public final class LocalInspectionsStatistics {
+  private static final ThreadMXBean ourThreadMXBean = ManagementFactory.getThreadMXBean();
+
+  private final ConcurrentHashMap<String, ToolStatistics> myTools = new ConcurrentHashMap<String, ToolStatistics>();
+
+  @NotNull
+  public static LocalInspectionsStatistics getInstance() {
+    return ServiceManager.getService(LocalInspectionsStatistics.class);
+  }
+
+  /**
+   * @return per-file CPU time budget of one tool in the priority range in milliseconds; tools which exceed it are run on the rest
+   *         of the file after the others, whose results are shown in the editor meanwhile, 0 means no budget
+   */
+  static int getToolTimeBudget() {
+    return Registry.intValue("daemon.local.inspection.time.budget.ms");
+  }
+
+  /**
+   * @return CPU time of the current thread in nanoseconds, or the wall time if the JVM doesn't measure the CPU time of threads
+   */
+  static long currentThreadCpuNanos() {
+    return ourThreadMXBean.isCurrentThreadCpuTimeSupported() ? ourThreadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+
+  @NotNull
+  ToolStatistics getOrCreate(@NotNull String shortName) {
+    ToolStatistics statistics = myTools.get(shortName);
+    if (statistics == null) {
+      statistics = myTools.cacheOrGet(shortName, new ToolStatistics(shortName));
+    }
+    return statistics;
+  }
+
+  @Nullable
+  public ToolStatistics get(@NotNull String shortName) {
+    return myTools.get(shortName);
+  }
+
+  void mergeFrom(@NotNull LocalInspectionsStatistics fileStatistics) {
+    for (ToolStatistics statistics : fileStatistics.myTools.values()) {
+      getOrCreate(statistics.getShortName()).add(statistics);
+    }
+  }
+
+  @NotNull
+  public List<ToolStatistics> getTools() {
+    List<ToolStatistics> result = new ArrayList<ToolStatistics>(myTools.values());
+    Collections.sort(result, new Comparator<ToolStatistics>() {
+      @Override
+      public int compare(ToolStatistics o1, ToolStatistics o2) {
+        long t1 = o1.getCpuNanos();
+        long t2 = o2.getCpuNanos();
+        return t1 < t2 ? 1 : t1 == t2 ? o1.getShortName().compareTo(o2.getShortName()) : -1;
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return tab-separated table with one tool per line, the slowest tools first
+   */
+  @NotNull
+  public String dump() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("inspection\tfiles\tcpu time (ms)\telements\tproblems\tdeferred\n");
+    for (ToolStatistics statistics : getTools()) {
+      builder.append(statistics.getShortName()).append('\t')
+        .append(statistics.getFileCount()).append('\t')
+        .append(statistics.getCpuNanos() / 1000000).append('\t')
+        .append(statistics.getElementCount()).append('\t')
+        .append(statistics.getProblemCount()).append('\t')
+        .append(statistics.getDeferredCount()).append('\n');
+    }
+    return builder.toString();
+  }
+
+  @TestOnly
+  public void clear() {
+    myTools.clear();
+  }
+
+  public static final class ToolStatistics {
+    private final String myShortName;
+    private final AtomicInteger myFileCount = new AtomicInteger();
+    private final AtomicLong myCpuNanos = new AtomicLong();
+    private final AtomicLong myElementCount = new AtomicLong();
+    private final AtomicLong myProblemCount = new AtomicLong();
+    private final AtomicInteger myDeferredCount = new AtomicInteger();
+
+    private ToolStatistics(@NotNull String shortName) {
+      myShortName = shortName;
+    }
+
+    void visited(long cpuNanos, int elementCount) {
+      myCpuNanos.addAndGet(cpuNanos);
+      myElementCount.addAndGet(elementCount);
+    }
+
+    void finished(int problemCount) {
+      myFileCount.incrementAndGet();
+      myProblemCount.addAndGet(problemCount);
+    }
+
+    void deferred() {
+      myDeferredCount.incrementAndGet();
+    }
+
+    private void add(@NotNull ToolStatistics other) {
+      myFileCount.addAndGet(other.getFileCount());
+      myCpuNanos.addAndGet(other.getCpuNanos());
+      myElementCount.addAndGet(other.getElementCount());
+      myProblemCount.addAndGet(other.getProblemCount());
+      myDeferredCount.addAndGet(other.getDeferredCount());
+    }
+
+    @NotNull
+    public String getShortName() {
+      return myShortName;
+    }
+
+    public int getFileCount() {
+      return myFileCount.get();
+    }
+
+    public long getCpuNanos() {
+      return myCpuNanos.get();
+    }
+
+    public long getElementCount() {
+      return myElementCount.get();
+    }
+
+    public long getProblemCount() {
+      return myProblemCount.get();
+    }
+
+    /**
+     * @return how many times the tool has exceeded its time budget and has been run after the other tools
+     */
+    public int getDeferredCount() {
+      return myDeferredCount.get();
+    }
+
+    @Override
+    public String toString() {
+      return myShortName + ": " + getCpuNanos() / 1000000 + "ms, " + getElementCount() + " elements, " + getProblemCount() + " problems";
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package com.intellij.codeInsight.daemon.impl;
 
 import com.intellij.codeHighlighting.HighlightingPass;
+import com.intellij.codeHighlighting.Pass;
 import com.intellij.codeHighlighting.TextEditorHighlightingPass;
 import com.intellij.concurrency.Job;
 import com.intellij.concurrency.JobImpl;
@@ -39,6 +40,7 @@ import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.Consumer;
@@ -213,7 +215,7 @@ public abstract class PassExecutorService implements Disposable {
     Pair<Document, Integer> key = Pair.create(document, passId);
     ScheduledPass scheduledPass = toBeSubmitted.get(key);
     if (scheduledPass != null) return scheduledPass;
-    scheduledPass = new ScheduledPass(fileEditors, pass, updateProgress, threadsToStartCountdown, jobPriority);
+    scheduledPass = new ScheduledPass(fileEditors, pass, updateProgress, threadsToStartCountdown, getJobPriority(pass, jobPriority));
     toBeSubmitted.put(key, scheduledPass);
     for (int predecessorId : pass.getCompletionPredecessorIds()) {
       ScheduledPass predecessor = findOrCreatePredecessorPass(fileEditors, document, toBeSubmitted, textEditorHighlightingPasses, freePasses, dependentPasses,
@@ -260,6 +262,16 @@ public abstract class PassExecutorService implements Disposable {
     return predecessor;
   }
 
+  /**
+   * Passes which work on the whole file regardless of what is visible are queued after the ones which highlight the visible range
+   * (a greater value means a lower priority), so that the latter are not delayed by them when the pool is busy.
+   */
+  private static int getJobPriority(@NotNull TextEditorHighlightingPass pass, int jobPriority) {
+    if (!Registry.is("daemon.whole.file.passes.low.priority")) return jobPriority;
+    int id = pass.getId();
+    return id == Pass.LINE_MARKERS || id == Pass.EXTERNAL_TOOLS || id == Pass.WOLF ? jobPriority + 1 : jobPriority;
+  }
+
   private static TextEditorHighlightingPass findPassById(final int id, @NotNull List<TextEditorHighlightingPass> textEditorHighlightingPasses) {
     TextEditorHighlightingPass textEditorPass = null;
     for (TextEditorHighlightingPass found : textEditorHighlightingPasses) {
@@ -303,6 +315,7 @@ public abstract class PassExecutorService implements Disposable {
     private final Collection<ScheduledPass> mySuccessorsOnCompletion = new ArrayList<ScheduledPass>();
     private final Collection<ScheduledPass> mySuccessorsOnSubmit = new ArrayList<ScheduledPass>();
     private final DaemonProgressIndicator myUpdateProgress;
+    private final long myDocumentStamp;
 
     private ScheduledPass(@NotNull List<FileEditor> fileEditors,
                           @NotNull TextEditorHighlightingPass pass,
@@ -315,6 +328,8 @@ public abstract class PassExecutorService implements Disposable {
       myJobPriority = jobPriority;
       myRunningPredecessorsCount = new AtomicInteger(0);
       myUpdateProgress = progressIndicator;
+      Document document = pass.getDocument();
+      myDocumentStamp = document == null ? -1 : document.getModificationStamp();
     }
 
     @Override
@@ -386,7 +401,7 @@ public abstract class PassExecutorService implements Disposable {
       log(myUpdateProgress, myPass, "Finished. ");
 
       if (!myUpdateProgress.isCanceled()) {
-        applyInformationToEditorsLater(myFileEditors, myPass, myUpdateProgress, myThreadsToStartCountdown);
+        applyInformationToEditorsLater(myFileEditors, myPass, myDocumentStamp, myUpdateProgress, myThreadsToStartCountdown);
         for (ScheduledPass successor : mySuccessorsOnCompletion) {
           int predecessorsToRun = successor.myRunningPredecessorsCount.decrementAndGet();
           if (predecessorsToRun == 0) {
@@ -405,19 +420,21 @@ public abstract class PassExecutorService implements Disposable {
 
   private void applyInformationToEditorsLater(@NotNull final List<FileEditor> fileEditors,
                                               @NotNull final TextEditorHighlightingPass pass,
+                                              final long documentStamp,
                                               @NotNull final DaemonProgressIndicator updateProgress,
                                               @NotNull final AtomicInteger threadsToStartCountdown) {
     final boolean testMode = ApplicationManager.getApplication().isUnitTestMode();
     ApplicationManager.getApplication().invokeLater(new DumbAwareRunnable() {
       @Override
       public void run() {
-        doApplyInformationToEditors(updateProgress, pass, fileEditors, threadsToStartCountdown, testMode);
+        doApplyInformationToEditors(updateProgress, pass, documentStamp, fileEditors, threadsToStartCountdown, testMode);
       }
     }, ModalityState.stateForComponent(fileEditors.get(0).getComponent()));
   }
 
   private void doApplyInformationToEditors(@NotNull DaemonProgressIndicator updateProgress,
                                            @NotNull TextEditorHighlightingPass pass,
+                                           long documentStamp,
                                            @NotNull List<FileEditor> fileEditors,
                                            @NotNull AtomicInteger threadsToStartCountdown,
                                            boolean testMode) {
@@ -438,6 +455,10 @@ public abstract class PassExecutorService implements Disposable {
             applied = true;
             log(updateProgress, pass, " Applied");
             pass.applyInformationToEditor();
+            Document document = pass.getDocument();
+            if (document != null && document.getModificationStamp() == documentStamp) {
+              DaemonLatencyStatistics.getInstance().passApplied(pass);
+            }
           }
           afterApplyInformationToEditor(pass, fileEditor, updateProgress);
 
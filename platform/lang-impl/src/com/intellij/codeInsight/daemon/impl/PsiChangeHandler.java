@@ -17,6 +17,7 @@
 package com.intellij.codeInsight.daemon.impl;
 
 import com.intellij.codeInsight.daemon.ChangeLocalityDetector;
+import com.intellij.codeInsight.problems.WolfTheProblemSolverImpl;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
@@ -217,6 +218,7 @@ public class PsiChangeHandler extends PsiTreeChangeAdapter implements Disposable
     while (true) {
       if (element == null || element instanceof PsiFile || element instanceof PsiDirectory) {
         myFileStatusMap.markAllFilesDirty();
+        WolfTheProblemSolverImpl.declarationChanged(myProject, child);
         return;
       }
 
@@ -47,7 +47,6 @@ import com.intellij.util.Consumer;
 import com.intellij.util.Processor;
 import com.intellij.util.SmartList;
 import com.intellij.util.containers.ContainerUtil;
-import com.intellij.util.containers.MultiMap;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -113,40 +112,82 @@ public class UpdateHighlightersUtil {
     return coveredBy.startOffset <= info.startOffset && info.endOffset <= coveredBy.endOffset && info.getGutterIconRenderer() == null;
   }
 
+  /**
+   * Old highlighters which are about to be removed, kept sorted by range and layer so that the new highlights can pick up
+   * the ones with the same range by binary search instead of disposing them and creating new ones.
+   */
   private static class HighlightersRecycler {
-    private final MultiMap<TextRange, RangeHighlighter> incinerator = new MultiMap<TextRange, RangeHighlighter>(){
+    private static final Comparator<RangeHighlighter> BY_RANGE_AND_LAYER = new Comparator<RangeHighlighter>() {
       @Override
-      protected Map<TextRange, Collection<RangeHighlighter>> createMap() {
-        return new THashMap<TextRange, Collection<RangeHighlighter>>();
-      }
-
-      @Override
-      protected Collection<RangeHighlighter> createCollection() {
-        return new SmartList<RangeHighlighter>();
+      public int compare(RangeHighlighter o1, RangeHighlighter o2) {
+        int d = compareRange(o1, o2.getStartOffset(), o2.getEndOffset());
+        return d != 0 ? d : o1.getLayer() - o2.getLayer();
       }
     };
 
+    private final List<RangeHighlighter> incinerator = new ArrayList<RangeHighlighter>();
+    private boolean[] pickedUp;
+
     private void recycleHighlighter(@NotNull RangeHighlighter highlighter) {
       if (highlighter.isValid()) {
-        incinerator.putValue(ProperTextRange.create(highlighter), highlighter);
+        assert pickedUp == null : "Cannot recycle after the pickup has started";
+        incinerator.add(highlighter);
       }
     }
 
-    private RangeHighlighter pickupHighlighterFromGarbageBin(int startOffset, int endOffset, int layer){
-      TextRange range = new TextRange(startOffset, endOffset);
-      Collection<RangeHighlighter> collection = incinerator.get(range);
-      for (RangeHighlighter highlighter : collection) {
-        if (highlighter.isValid() && highlighter.getLayer() == layer) {
-          incinerator.removeValue(range, highlighter);
-          return highlighter;
+    private RangeHighlighter pickupHighlighterFromGarbageBin(int startOffset, int endOffset, int layer) {
+      return pickupHighlighterFromGarbageBin(startOffset, endOffset, layer, null);
+    }
+
+    /**
+     * @param tooltip if not null, the highlighter with this error stripe tooltip is preferred among those with the same range and layer,
+     *                so that reusing it does not produce an attributes change event
+     */
+    private RangeHighlighter pickupHighlighterFromGarbageBin(int startOffset, int endOffset, int layer, @Nullable Object tooltip) {
+      if (pickedUp == null) {
+        ContainerUtil.sort(incinerator, BY_RANGE_AND_LAYER);
+        pickedUp = new boolean[incinerator.size()];
+      }
+      int low = 0;
+      int high = incinerator.size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (compareRange(incinerator.get(mid), startOffset, endOffset) < 0) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      int found = -1;
+      for (int i = low; i < incinerator.size(); i++) {
+        RangeHighlighter highlighter = incinerator.get(i);
+        if (compareRange(highlighter, startOffset, endOffset) != 0 || highlighter.getLayer() > layer) break;
+        if (pickedUp[i] || highlighter.getLayer() != layer || !highlighter.isValid()) continue;
+        if (found == -1) found = i;
+        if (tooltip == null || tooltip.equals(((RangeHighlighterEx)highlighter).getErrorStripeTooltip())) {
+          found = i;
+          break;
         }
       }
-      return null;
+      if (found == -1) return null;
+      pickedUp[found] = true;
+      return incinerator.get(found);
+    }
+
+    private static int compareRange(@NotNull RangeHighlighter highlighter, int startOffset, int endOffset) {
+      int d = highlighter.getStartOffset() - startOffset;
+      return d != 0 ? d : highlighter.getEndOffset() - endOffset;
     }
 
     @NotNull
     private Collection<? extends RangeHighlighter> forAllInGarbageBin() {
-      return incinerator.values();
+      if (pickedUp == null) return incinerator;
+      List<RangeHighlighter> result = new ArrayList<RangeHighlighter>();
+      for (int i = 0; i < incinerator.size(); i++) {
+        if (!pickedUp[i]) result.add(incinerator.get(i));
+      }
+      return result;
     }
   }
 
@@ -229,6 +270,7 @@ public class UpdateHighlightersUtil {
                                           @NotNull final ProperTextRange range,
                                           final int group) {
     ApplicationManager.getApplication().assertIsDispatchThread();
+    long start = System.nanoTime();
 
     final PsiFile psiFile = PsiDocumentManager.getInstance(project).getPsiFile(document);
     cleanFileLevelHighlights(project, group, psiFile);
@@ -298,6 +340,7 @@ public class UpdateHighlightersUtil {
       clearWhiteSpaceOptimizationFlag(document);
     }
     assertMarkupConsistent(markup, project);
+    DaemonLatencyStatistics.getInstance().markupUpdated(System.nanoTime() - start);
   }
 
   static void setHighlightersInRange(@NotNull final Project project,
@@ -308,6 +351,7 @@ public class UpdateHighlightersUtil {
                                      @NotNull final MarkupModelEx markup,
                                      final int group) {
     ApplicationManager.getApplication().assertIsDispatchThread();
+    long start = System.nanoTime();
 
     final SeverityRegistrar severityRegistrar = SeverityUtil.getSeverityRegistrar(project);
     final HighlightersRecycler infosToRemove = new HighlightersRecycler();
@@ -368,6 +412,7 @@ public class UpdateHighlightersUtil {
       clearWhiteSpaceOptimizationFlag(document);
     }
     assertMarkupConsistent(markup, project);
+    DaemonLatencyStatistics.getInstance().markupUpdated(System.nanoTime() - start);
   }
 
   private static boolean isWarningCoveredByError(@NotNull HighlightInfo info,
@@ -418,7 +463,7 @@ public class UpdateHighlightersUtil {
     info.setGroup(group);
 
     int layer = getLayer(info, severityRegistrar);
-    RangeHighlighterEx highlighter = infosToRemove == null ? null : (RangeHighlighterEx)infosToRemove.pickupHighlighterFromGarbageBin(info.startOffset, info.endOffset, layer);
+    RangeHighlighterEx highlighter = infosToRemove == null ? null : (RangeHighlighterEx)infosToRemove.pickupHighlighterFromGarbageBin(info.startOffset, info.endOffset, layer, info);
 
     final TextRange finalInfoRange = new TextRange(infoStartOffset, infoEndOffset);
     final TextAttributes infoAttributes = info.getTextAttributes(psiFile, colorsScheme);
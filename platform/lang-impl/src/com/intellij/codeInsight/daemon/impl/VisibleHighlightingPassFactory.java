@@ -21,11 +21,13 @@ package com.intellij.codeInsight.daemon.impl;
 
 import com.intellij.codeHighlighting.Pass;
 import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.LogicalPosition;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.ProperTextRange;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.registry.Registry;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -49,6 +51,30 @@ public abstract class VisibleHighlightingPassFactory extends AbstractProjectComp
     return new ProperTextRange(visibleStart, Math.max(visibleEnd, visibleStart));
   }
 
+  /**
+   * @return the visible range, extended by a margin of lines above and below for {@link #isViewportFirst(Document) huge} files
+   *         so that scrolling a bit does not reveal unhighlighted text
+   */
+  @NotNull
+  public static ProperTextRange calculatePriorityRange(@NotNull Editor editor) {
+    ProperTextRange visibleRange = calculateVisibleRange(editor);
+    Document document = editor.getDocument();
+    int margin = Registry.intValue("daemon.viewport.first.margin.lines");
+    if (!isViewportFirst(document) || margin <= 0 || document.getTextLength() == 0) return visibleRange;
+    int startLine = Math.max(0, document.getLineNumber(visibleRange.getStartOffset()) - margin);
+    int endLine = Math.min(document.getLineCount() - 1, document.getLineNumber(visibleRange.getEndOffset()) + margin);
+    return new ProperTextRange(document.getLineStartOffset(startLine), document.getLineEndOffset(endLine));
+  }
+
+  /**
+   * @return true if the file is so big that the elements outside the priority range should be processed in the order of their distance
+   *         from it, see {@link Divider#sortByDistance}
+   */
+  public static boolean isViewportFirst(@NotNull Document document) {
+    int minLines = Registry.intValue("daemon.viewport.first.min.lines");
+    return minLines > 0 && document.getLineCount() >= minLines;
+  }
+
   @Nullable
   protected static TextRange calculateRangeToProcess(Editor editor) {
     TextRange dirtyTextRange = FileStatusMap.getDirtyTextRange(editor, Pass.UPDATE_ALL);
@@ -124,6 +124,10 @@ public class MockWolfTheProblemSolver extends WolfTheProblemSolver {
     myDelegate = delegate;
   }
 
+  WolfTheProblemSolver getDelegate() {
+    return myDelegate;
+  }
+
   @Override
   public void reportProblems(final VirtualFile file, Collection<Problem> problems) {
     if (myDelegate != null) myDelegate.reportProblems(file,problems);
@@ -27,13 +27,16 @@ import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.TextEditor;
+import com.intellij.openapi.fileEditor.ex.IdeDocumentHistory;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.*;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FileStatusListener;
 import com.intellij.openapi.vcs.FileStatusManager;
@@ -41,12 +44,20 @@ import com.intellij.openapi.vfs.*;
 import com.intellij.problems.Problem;
 import com.intellij.problems.WolfTheProblemSolver;
 import com.intellij.psi.*;
+import com.intellij.psi.impl.cache.impl.id.IdIndex;
+import com.intellij.psi.impl.cache.impl.id.IdIndexEntry;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.LocalSearchScope;
+import com.intellij.psi.search.UsageSearchContext;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.FileBasedIndex;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
 import java.util.*;
 
@@ -55,7 +66,9 @@ import java.util.*;
  */
 public class WolfTheProblemSolverImpl extends WolfTheProblemSolver {
   private final Map<VirtualFile, ProblemFileInfo> myProblems = new THashMap<VirtualFile, ProblemFileInfo>();
-  private final Collection<VirtualFile> myCheckingQueue = new THashSet<VirtualFile>(10);
+  private final Collection<VirtualFile> myCheckingQueue = new LinkedHashSet<VirtualFile>(10);
+  // names of the declarations changed since the last check, the files which use them are to be checked again
+  private final Set<String> myChangedDeclarations = new THashSet<String>();
 
   private final Project myProject;
   private final List<ProblemListener> myProblemListeners = ContainerUtil.createLockFreeCopyOnWriteList();
@@ -152,6 +165,16 @@ public class WolfTheProblemSolverImpl extends WolfTheProblemSolver {
       public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
         clearSyntaxErrorFlag(event);
       }
+
+      @Override
+      public void beforeChildReplacement(@NotNull PsiTreeChangeEvent event) {
+        beforeNameChange(event.getOldChild(), event.getNewChild());
+      }
+
+      @Override
+      public void beforeChildRemoval(@NotNull PsiTreeChangeEvent event) {
+        beforeNameChange(event.getChild(), null);
+      }
     };
     psiManager.addPsiTreeChangeListener(changeListener);
     VirtualFileListener virtualFileListener = new VirtualFileAdapter() {
@@ -245,6 +268,7 @@ public class WolfTheProblemSolverImpl extends WolfTheProblemSolver {
     throws ProcessCanceledException {
     if (!myProject.isOpen()) return;
 
+    queueFilesUsingChangedDeclarations();
     List<VirtualFile> files;
     synchronized (myCheckingQueue) {
       files = new ArrayList<VirtualFile>(myCheckingQueue);
@@ -266,6 +290,128 @@ public class WolfTheProblemSolverImpl extends WolfTheProblemSolver {
     }
   }
 
+  /**
+   * Remembers the name of the declaration containing a change which is not local to a code block (e.g. a method signature change),
+   * so that the files using this name are checked for problems again during the next run of the problem solver pass.
+   */
+  public static void declarationChanged(@NotNull Project project, @NotNull PsiElement changed) {
+    if (!Registry.is("wolf.check.files.using.changed.declarations")) return;
+    WolfTheProblemSolver wolf = getInstance(project);
+    if (wolf instanceof MockWolfTheProblemSolver) {
+      wolf = ((MockWolfTheProblemSolver)wolf).getDelegate();
+    }
+    if (wolf instanceof WolfTheProblemSolverImpl) {
+      PsiNamedElement declaration = getEnclosingDeclaration(changed);
+      if (declaration != null) {
+        ((WolfTheProblemSolverImpl)wolf).declarationChanged(declaration.getName());
+      }
+    }
+  }
+
+  // the files using the old name of a renamed declaration are to be checked as well, record it while it's still there
+  private void beforeNameChange(@Nullable PsiElement child, @Nullable PsiElement replacement) {
+    if (child == null || !Registry.is("wolf.check.files.using.changed.declarations")) return;
+    for (PsiElement element = child; element != null && !(element instanceof PsiFileSystemItem); element = element.getParent()) {
+      if (element instanceof PsiNameIdentifierOwner) {
+        PsiElement nameIdentifier = ((PsiNameIdentifierOwner)element).getNameIdentifier();
+        if (nameIdentifier == null || !PsiTreeUtil.isAncestor(nameIdentifier, child, false)) return;
+        // the child is a part of the name, so its text is short
+        if (replacement != null && Comparing.equal(child.getText(), replacement.getText())) return;
+        String name = ((PsiNameIdentifierOwner)element).getName();
+        // only now that the name of a declaration is known to change, check whether it can be used in other files
+        if (!StringUtil.isEmpty(name) && !(element.getUseScope() instanceof LocalSearchScope)) {
+          declarationChanged(name);
+        }
+        return;
+      }
+    }
+  }
+
+  private void declarationChanged(@Nullable String name) {
+    if (StringUtil.isEmpty(name)) return;
+    synchronized (myChangedDeclarations) {
+      myChangedDeclarations.add(name);
+    }
+  }
+
+  // the innermost named element which can be used outside of its file, e.g. the method rather than its changed parameter
+  @Nullable
+  private static PsiNamedElement getEnclosingDeclaration(@NotNull PsiElement element) {
+    for (PsiElement e = element; e != null && !(e instanceof PsiFileSystemItem); e = e.getParent()) {
+      if (e instanceof PsiNamedElement && !StringUtil.isEmpty(((PsiNamedElement)e).getName()) && !(e.getUseScope() instanceof LocalSearchScope)) {
+        return (PsiNamedElement)e;
+      }
+    }
+    return null;
+  }
+
+  @TestOnly
+  @NotNull
+  public List<VirtualFile> queueFilesUsingChangedDeclarationsAndGetQueue() {
+    queueFilesUsingChangedDeclarations();
+    synchronized (myCheckingQueue) {
+      return new ArrayList<VirtualFile>(myCheckingQueue);
+    }
+  }
+
+  private void queueFilesUsingChangedDeclarations() {
+    if (DumbService.isDumb(myProject)) return;
+    List<String> names;
+    synchronized (myChangedDeclarations) {
+      if (myChangedDeclarations.isEmpty()) return;
+      names = new ArrayList<String>(myChangedDeclarations);
+      myChangedDeclarations.clear();
+    }
+    final int limit = Registry.intValue("wolf.check.files.using.changed.declarations.limit");
+    final GlobalSearchScope scope = GlobalSearchScope.projectScope(myProject);
+    final Set<VirtualFile> candidates = new LinkedHashSet<VirtualFile>();
+    for (String name : names) {
+      final Set<VirtualFile> files = new THashSet<VirtualFile>();
+      FileBasedIndex.getInstance().processValues(IdIndex.NAME, new IdIndexEntry(name, true), null, new FileBasedIndex.ValueProcessor<Integer>() {
+        @Override
+        public boolean process(VirtualFile file, Integer mask) {
+          ProgressManager.checkCanceled();
+          if ((mask.intValue() & UsageSearchContext.IN_CODE) != 0) {
+            files.add(file);
+          }
+          return files.size() <= limit;
+        }
+      }, scope);
+      if (files.size() > limit) {
+        // the name is too common to tell the dependent files apart, they'll be checked when opened
+        continue;
+      }
+      candidates.addAll(files);
+    }
+
+    boolean queued = false;
+    for (VirtualFile file : candidates) {
+      if (file.isValid() && !willBeHighlightedAnyway(file) && isToBeHighlighted(file)) {
+        doQueue(file);
+        queued = true;
+      }
+    }
+    if (queued) {
+      moveRecentlyEditedFilesFirst();
+    }
+  }
+
+  // recently edited files go first, the most recent one at the head of the queue, the rest keep their order
+  private void moveRecentlyEditedFilesFirst() {
+    VirtualFile[] changedFiles = IdeDocumentHistory.getInstance(myProject).getChangedFiles();
+    synchronized (myCheckingQueue) {
+      List<VirtualFile> ordered = new ArrayList<VirtualFile>(myCheckingQueue.size());
+      for (int i = changedFiles.length - 1; i >= 0; i--) {
+        if (myCheckingQueue.remove(changedFiles[i])) {
+          ordered.add(changedFiles[i]);
+        }
+      }
+      ordered.addAll(myCheckingQueue);
+      myCheckingQueue.clear();
+      myCheckingQueue.addAll(ordered);
+    }
+  }
+
   public static class HaveGotErrorException extends RuntimeException {
     @NotNull private final HighlightInfo myHighlightInfo;
     private final boolean myHasErrorElement;
@@ -32,6 +32,8 @@ import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.util.ProgressIndicatorBase;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.util.Conditions;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -67,6 +69,9 @@ public class InspectionApplication {
   public String myProfilePath = null;
   public boolean myRunWithEditorSettings = false;
   public boolean myRunGlobalToolsOnly = false;
+  public int myShardCount = 1;
+  public int myShardIndex = 0;
+  public String myShardsPath = null;
   private Project myProject;
   private int myVerboseLevel = 0;
   public String myOutputFormat = null;
@@ -118,7 +123,6 @@ public class InspectionApplication {
   }
 
   private void run() {
-
     File tmpDir = null;
     try {
       myProjectPath = myProjectPath.replace(File.separatorChar, '/');
@@ -154,7 +158,7 @@ public class InspectionApplication {
       logMessageLn(1, InspectionsBundle.message("inspection.done"));
       logMessage(1, InspectionsBundle.message("inspection.application.initializing.project"));
 
-      Profile inspectionProfile = loadInspectionProfile();
+      final Profile inspectionProfile = loadInspectionProfile();
       if (inspectionProfile == null) return;
 
       final InspectionManagerEx im = (InspectionManagerEx)InspectionManager.getInstance(myProject);
@@ -186,14 +190,25 @@ public class InspectionApplication {
         logMessageLn(1, InspectionsBundle.message("inspection.application.chosen.profile.log message", inspectionProfile.getName()));
       }
 
-      InspectionsReportConverter reportConverter = getReportConverter(myOutputFormat);
+      final boolean sharded = myShardCount > 1 && myShardsPath == null;
+      if (sharded && myOutPath == null) {
+        logError(InspectionsBundle.message("inspection.application.shard.output.path.required"));
+        printHelp();
+      }
+      final AnalysisScope shardScope = sharded ? InspectionShards.createShardScope(myProject, scope, myShardIndex, myShardCount) : scope;
+
+      // the shards write raw results to be merged and converted later
+      InspectionsReportConverter reportConverter = sharded ? null : getReportConverter(myOutputFormat);
       if (reportConverter == null && myOutputFormat != null && myOutputFormat.endsWith(".xsl")) {
         // xslt converter
         reportConverter = new XSLTReportConverter(myOutputFormat);
       }
 
       final String resultsDataPath;
-      if ((reportConverter == null || !reportConverter.useTmpDirForRawData()) // use default xml converter(if null( or don't store default xml report in tmp dir
+      if (sharded) {
+        resultsDataPath = InspectionShards.getShardDirectory(myOutPath, myShardIndex).getPath();
+      }
+      else if ((reportConverter == null || !reportConverter.useTmpDirForRawData()) // use default xml converter(if null( or don't store default xml report in tmp dir
           && myOutPath != null) {  // and don't use STDOUT stream
         resultsDataPath = myOutPath;
       }
@@ -211,57 +226,83 @@ public class InspectionApplication {
       }
 
       final List<File> inspectionsResults = new ArrayList<File>();
-      ProgressManager.getInstance().runProcess(new Runnable() {
-        @Override
-        public void run() {
-          if (!GlobalInspectionContextUtil.canRunInspections(myProject, false)) {
-            if (myErrorCodeRequired) System.exit(1);
-            return;
-          }
-          inspectionContext.launchInspectionsOffline(scope, resultsDataPath, myRunGlobalToolsOnly, inspectionsResults);
-          logMessageLn(1, "\n" +
-                          InspectionsBundle.message("inspection.capitalized.done") +
-                          "\n");
-        }
-      }, new ProgressIndicatorBase() {
-        private String lastPrefix = "";
-        private int myLastPercent = -1;
-
-        @Override
-        public void setText(String text) {
-          if (myVerboseLevel == 0) return;
-
-          if (myVerboseLevel == 1) {
-            String prefix = getPrefix(text);
-            if (prefix == null) return;
-            if (prefix.equals(lastPrefix)) {
-              logMessage(1, ".");
+      if (myShardsPath != null) {
+        inspectionsResults.addAll(InspectionShards.mergeShards(myShardsPath, resultsDataPath));
+        logMessageLn(1, InspectionsBundle.message("inspection.application.shard.results.merged", inspectionsResults.size()));
+        // the report converters need the tools which have reported the merged problems
+        inspectionContext.collectTools();
+      }
+      else {
+        ProgressManager.getInstance().runProcess(new Runnable() {
+          @Override
+          public void run() {
+            if (!GlobalInspectionContextUtil.canRunInspections(myProject, false)) {
+              if (myErrorCodeRequired) System.exit(1);
               return;
             }
-            lastPrefix = prefix;
-            logMessageLn(1, "");
-            logMessageLn(1, prefix);
-            return;
+            if (!sharded) {
+              inspectionContext.launchInspectionsOffline(scope, resultsDataPath, myRunGlobalToolsOnly, inspectionsResults);
+            }
+            else {
+              // global tools need the reference graph of the whole scope, so the shards split the tools instead of the files
+              GlobalInspectionContextImpl globalContext = im.createNewGlobalContext(true);
+              globalContext.setExternalProfile((InspectionProfile)inspectionProfile);
+              globalContext.setGlobalToolsFilter(new Condition<String>() {
+                @Override
+                public boolean value(String shortName) {
+                  return InspectionShards.isToolInShard(shortName, myShardIndex, myShardCount);
+                }
+              });
+              globalContext.launchInspectionsOffline(scope, resultsDataPath, true, inspectionsResults);
+              if (!myRunGlobalToolsOnly) {
+                inspectionContext.setGlobalToolsFilter(Conditions.<String>alwaysFalse());
+                inspectionContext.launchInspectionsOffline(shardScope, resultsDataPath, false, inspectionsResults);
+              }
+            }
+            logMessageLn(1, "\n" +
+                            InspectionsBundle.message("inspection.capitalized.done") +
+                            "\n");
           }
+        }, new ProgressIndicatorBase() {
+          private String lastPrefix = "";
+          private int myLastPercent = -1;
+
+          @Override
+          public void setText(String text) {
+            if (myVerboseLevel == 0) return;
+
+            if (myVerboseLevel == 1) {
+              String prefix = getPrefix(text);
+              if (prefix == null) return;
+              if (prefix.equals(lastPrefix)) {
+                logMessage(1, ".");
+                return;
+              }
+              lastPrefix = prefix;
+              logMessageLn(1, "");
+              logMessageLn(1, prefix);
+              return;
+            }
 
-          if (myVerboseLevel == 3) {
-            if (!isIndeterminate() && getFraction() > 0) {
-              final int percent = (int)(getFraction() * 100);
-              if (myLastPercent == percent) return;
-              myLastPercent = percent;
-              String msg = InspectionsBundle.message("inspection.display.name") + " " + percent + "%";
-              logMessageLn(2, msg);
+            if (myVerboseLevel == 3) {
+              if (!isIndeterminate() && getFraction() > 0) {
+                final int percent = (int)(getFraction() * 100);
+                if (myLastPercent == percent) return;
+                myLastPercent = percent;
+                String msg = InspectionsBundle.message("inspection.display.name") + " " + percent + "%";
+                logMessageLn(2, msg);
+              }
+              return;
             }
-            return;
-          }
 
-          logMessageLn(2, text);
-        }
-      });
-      final String descriptionsFile = resultsDataPath + File.separatorChar + DESCRIPTIONS + XML_EXTENSION;
-      describeInspections(descriptionsFile,
-                          myRunWithEditorSettings ? null : inspectionProfile.getName());
-      inspectionsResults.add(new File(descriptionsFile));
+            logMessageLn(2, text);
+          }
+        });
+        final String descriptionsFile = resultsDataPath + File.separatorChar + DESCRIPTIONS + XML_EXTENSION;
+        describeInspections(descriptionsFile,
+                            myRunWithEditorSettings ? null : inspectionProfile.getName());
+        inspectionsResults.add(new File(descriptionsFile));
+      }
       // convert report
       if (reportConverter != null) {
         try {
@@ -93,6 +93,15 @@ public class InspectionMain implements ApplicationStarter {
         else if ("-t".equals(arg)) {
           myApplication.myErrorCodeRequired = false;
         }
+        else if ("-shards".equals(arg)) {
+          myApplication.myShardCount = Integer.parseInt(args[++i]);
+        }
+        else if ("-shard".equals(arg)) {
+          myApplication.myShardIndex = Integer.parseInt(args[++i]);
+        }
+        else if ("-merge".equals(arg)) {
+          myApplication.myShardsPath = args[++i];
+        }
         else {
           System.err.println("unexpected argument: " + arg);
           printHelp();
@@ -103,6 +112,14 @@ public class InspectionMain implements ApplicationStarter {
       e.printStackTrace();
       printHelp();
     }
+    catch (NumberFormatException e) {
+      e.printStackTrace();
+      printHelp();
+    }
+    if (myApplication.myShardIndex < 0 || myApplication.myShardIndex >= Math.max(myApplication.myShardCount, 1)) {
+      System.err.println("invalid shard index: " + myApplication.myShardIndex);
+      printHelp();
+    }
 
     myApplication.myRunGlobalToolsOnly = System.getProperty("idea.no.local.inspections") != null;
   }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.DelegatingGlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.SearchScope;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Splitting of the headless inspection run into shards which are inspected by separate processes, and merging of their results.
+ * <p/>
+ * A file belongs to the shard given by the hash of its path, so every process computes the same partition independently.
+ * Local tools are run by every shard on its files only. Global tools need the reference graph of the whole scope, so each of them
+ * is run on the whole scope by the shard given by the hash of its short name. The global tools themselves are not sharded:
+ * every shard which runs a tool needing the reference graph builds the graph of the whole scope, so that part costs as much
+ * CPU time per shard and as much memory per process as an unsharded run. Every shard writes its raw results into its own
+ * subdirectory, and the merge concatenates the problems reported for the same tool in the different shards.
+ */
+public class InspectionShards {
+  @NonNls private static final String SHARD_DIRECTORY_PREFIX = "shard-";
+
+  private InspectionShards() {
+  }
+
+  @NotNull
+  public static File getShardDirectory(@NotNull String outputPath, int shardIndex) {
+    return new File(outputPath, SHARD_DIRECTORY_PREFIX + shardIndex);
+  }
+
+  public static boolean isInShard(@NotNull VirtualFile file, int shardIndex, int shardCount) {
+    return getShard(file.getPath(), shardCount) == shardIndex;
+  }
+
+  /**
+   * @return whether the global tool is run by the shard
+   */
+  public static boolean isToolInShard(@NotNull String shortName, int shardIndex, int shardCount) {
+    return getShard(shortName, shardCount) == shardIndex;
+  }
+
+  static int getShard(@NotNull String key, int shardCount) {
+    return (key.hashCode() & Integer.MAX_VALUE) % shardCount;
+  }
+
+  /**
+   * @return the part of the scope which belongs to the shard, or the scope itself if it cannot be split into files
+   */
+  @NotNull
+  public static AnalysisScope createShardScope(@NotNull Project project,
+                                               @NotNull AnalysisScope scope,
+                                               final int shardIndex,
+                                               final int shardCount) {
+    SearchScope searchScope = scope.toSearchScope();
+    if (!(searchScope instanceof GlobalSearchScope)) return scope;
+    return new AnalysisScope(new DelegatingGlobalSearchScope((GlobalSearchScope)searchScope) {
+      @Override
+      public boolean contains(VirtualFile file) {
+        return isInShard(file, shardIndex, shardCount) && super.contains(file);
+      }
+    }, project);
+  }
+
+  /**
+   * Merges the results written by the shards into the shard subdirectories of <code>shardsPath</code>.
+   *
+   * @param outputPath the directory to write the merged results to
+   * @return the merged result files
+   */
+  @NotNull
+  public static List<File> mergeShards(@NotNull String shardsPath, @NotNull String outputPath) throws IOException, JDOMException {
+    File[] shardDirectories = new File(shardsPath).listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        return file.isDirectory() && file.getName().startsWith(SHARD_DIRECTORY_PREFIX);
+      }
+    });
+    if (shardDirectories == null || shardDirectories.length == 0) return Collections.emptyList();
+    Arrays.sort(shardDirectories);
+
+    Map<String, List<File>> toolResults = new TreeMap<String, List<File>>();
+    for (File shardDirectory : shardDirectories) {
+      File[] files = shardDirectory.listFiles();
+      if (files == null) continue;
+      for (File file : files) {
+        if (!file.isFile() || !file.getName().endsWith(InspectionApplication.XML_EXTENSION)) continue;
+        List<File> results = toolResults.get(file.getName());
+        if (results == null) {
+          results = new ArrayList<File>();
+          toolResults.put(file.getName(), results);
+        }
+        results.add(file);
+      }
+    }
+
+    new File(outputPath).mkdirs();
+    List<File> merged = new ArrayList<File>();
+    for (Map.Entry<String, List<File>> entry : toolResults.entrySet()) {
+      File target = new File(outputPath, entry.getKey());
+      List<File> results = entry.getValue();
+      if (results.size() == 1 || entry.getKey().equals(InspectionApplication.DESCRIPTIONS + InspectionApplication.XML_EXTENSION)) {
+        FileUtil.copy(results.get(0), target);
+      }
+      else {
+        Element root = null;
+        for (File result : results) {
+          Element shardRoot = JDOMUtil.loadDocument(result).getRootElement();
+          if (root == null) {
+            root = (Element)shardRoot.clone();
+            continue;
+          }
+          for (Object child : new ArrayList<Object>(shardRoot.getChildren())) {
+            root.addContent((Element)((Element)child).clone());
+          }
+        }
+        JDOMUtil.writeDocument(new Document(root), target, "\n");
+      }
+      merged.add(target);
+    }
+    return merged;
+  }
+}
@@ -43,6 +43,7 @@ import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectUtilCore;
 import com.intellij.openapi.ui.MessageType;
+import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.JDOMUtil;
 import com.intellij.openapi.util.NotNullLazyValue;
 import com.intellij.openapi.util.io.FileUtil;
@@ -56,6 +57,7 @@ import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.ui.content.*;
 import com.intellij.util.Processor;
 import com.intellij.util.TripleFunction;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.HashMap;
 import com.intellij.util.ui.UIUtil;
 import gnu.trove.THashMap;
@@ -82,6 +84,7 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
   private Content myContent = null;
 
   private AnalysisUIOptions myUIOptions;
+  private Condition<String> myGlobalToolsFilter;
 
   public GlobalInspectionContextImpl(@NotNull Project project, @NotNull NotNullLazyValue<ContentManager> contentManager) {
     super(project);
@@ -94,6 +97,14 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
     return myContentManager.getValue();
   }
 
+  /**
+   * Runs only the global tools (those which need the reference graph of the whole scope) with the accepted short names,
+   * e.g. when the scope is one of several shards and the global tools are distributed between separate runs on the union of them.
+   */
+  public void setGlobalToolsFilter(@Nullable Condition<String> shortNameFilter) {
+    myGlobalToolsFilter = shortNameFilter;
+  }
+
   public synchronized void addView(@NotNull InspectionResultsView view, String title) {
     if (myContent != null) return;
     myContentManager.getValue().addContentManagerListener(new ContentManagerAdapter() {
@@ -317,10 +328,22 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
     appendPairedInspectionsForUnfairTools(globalTools, globalSimpleTools, localTools);
 
     ((RefManagerImpl)getRefManager()).initializeAnnotators();
-    runGlobalTools(scope, inspectionManager, globalTools);
+    if (myGlobalToolsFilter == null) {
+      runGlobalTools(scope, inspectionManager, globalTools);
+    }
+    else {
+      List<Tools> filteredTools = ContainerUtil.filter(globalTools, new Condition<Tools>() {
+        @Override
+        public boolean value(Tools tools) {
+          return myGlobalToolsFilter.value(tools.getShortName());
+        }
+      });
+      if (!filteredTools.isEmpty()) {
+        runGlobalTools(scope, inspectionManager, filteredTools);
+      }
+    }
     if (runGlobalToolsOnly) return;
 
-    final PsiManager psiManager = PsiManager.getInstance(getProject());
     final Set<VirtualFile> localScopeFiles = scope.toSearchScope() instanceof LocalSearchScope ? new THashSet<VirtualFile>() : null;
     for (Tools tools : globalSimpleTools) {
       GlobalInspectionToolWrapper toolWrapper = (GlobalInspectionToolWrapper)tools.getTool();
@@ -329,6 +352,31 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
     }
 
     final Map<String, InspectionToolWrapper> map = getInspectionWrappersMap(localTools);
+    final InspectionResultCache resultCache = InspectionResultCache.isEnabled() ? InspectionResultCache.open(getProject()) : null;
+    try {
+      runLocalTools(scope, inspectionManager, localTools, globalSimpleTools, localScopeFiles, map, resultCache);
+    }
+    finally {
+      if (resultCache != null) {
+        resultCache.close();
+      }
+    }
+    for (Tools tools : globalSimpleTools) {
+      GlobalInspectionToolWrapper toolWrapper = (GlobalInspectionToolWrapper)tools.getTool();
+      GlobalSimpleInspectionTool tool = (GlobalSimpleInspectionTool)toolWrapper.getTool();
+      ProblemDescriptionsProcessor problemDescriptionProcessor = getProblemDescriptionProcessor(toolWrapper, map);
+      tool.inspectionFinished(inspectionManager, this, problemDescriptionProcessor);
+    }
+  }
+
+  private void runLocalTools(@NotNull AnalysisScope scope,
+                             @NotNull final InspectionManagerEx inspectionManager,
+                             @NotNull final List<Tools> localTools,
+                             @NotNull final List<Tools> globalSimpleTools,
+                             @Nullable final Set<VirtualFile> localScopeFiles,
+                             @NotNull final Map<String, InspectionToolWrapper> map,
+                             @Nullable final InspectionResultCache resultCache) {
+    final PsiManager psiManager = PsiManager.getInstance(getProject());
     scope.accept(new PsiElementVisitor() {
       @Override
       public void visitFile(final PsiFile file) {
@@ -347,7 +395,13 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
                                                                    file.getTextLength(), LocalInspectionsPass.EMPTY_PRIORITY_RANGE, true);
         try {
           final List<LocalInspectionToolWrapper> lTools = getWrappersFromTools(localTools, file);
-          pass.doInspectInBatch(GlobalInspectionContextImpl.this, inspectionManager, lTools);
+          InspectionResultCache.FileState state = resultCache == null ? null : resultCache.computeState(file);
+          if (state == null) {
+            pass.doInspectInBatch(GlobalInspectionContextImpl.this, inspectionManager, lTools);
+          }
+          else {
+            runLocalToolsWithCache(file, pass, inspectionManager, lTools, resultCache, state);
+          }
 
           JobLauncher.getInstance().invokeConcurrentlyUnderProgress(globalSimpleTools, myProgressIndicator, false, new Processor<Tools>() {
             @Override
@@ -383,12 +437,38 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
         }
       }
     });
-    for (Tools tools : globalSimpleTools) {
-      GlobalInspectionToolWrapper toolWrapper = (GlobalInspectionToolWrapper)tools.getTool();
-      GlobalSimpleInspectionTool tool = (GlobalSimpleInspectionTool)toolWrapper.getTool();
-      ProblemDescriptionsProcessor problemDescriptionProcessor = getProblemDescriptionProcessor(toolWrapper, map);
-      tool.inspectionFinished(inspectionManager, this, problemDescriptionProcessor);
+  }
+
+  private void runLocalToolsWithCache(@NotNull PsiFile file,
+                                      @NotNull LocalInspectionsPass pass,
+                                      @NotNull InspectionManagerEx inspectionManager,
+                                      @NotNull List<LocalInspectionToolWrapper> toolWrappers,
+                                      @NotNull InspectionResultCache resultCache,
+                                      @NotNull InspectionResultCache.FileState state) {
+    Set<String> cleanTools = resultCache.getCleanTools(state);
+    Set<String> newCleanTools = new THashSet<String>();
+    List<LocalInspectionToolWrapper> toRun = new ArrayList<LocalInspectionToolWrapper>(toolWrappers.size());
+    for (LocalInspectionToolWrapper toolWrapper : toolWrappers) {
+      String key = resultCache.getToolKey(toolWrapper);
+      if (cleanTools.contains(key)) {
+        newCleanTools.add(key);
+      }
+      else {
+        toRun.add(toolWrapper);
+      }
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(file.getName() + ": " + (toolWrappers.size() - toRun.size()) + " of " + toolWrappers.size() + " tools skipped as clean");
+    }
+    pass.doInspectInBatch(this, inspectionManager, toRun);
+
+    Set<String> toolsWithProblems = pass.getToolsWithProblems();
+    for (LocalInspectionToolWrapper toolWrapper : toRun) {
+      if (!toolsWithProblems.contains(toolWrapper.getShortName())) {
+        newCleanTools.add(resultCache.getToolKey(toolWrapper));
+      }
     }
+    resultCache.update(file, state, newCleanTools);
   }
 
   private void runGlobalTools(@NotNull AnalysisScope scope, @NotNull InspectionManagerEx inspectionManager, @NotNull List<Tools> globalTools) {
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection.ex;
+
+import com.intellij.openapi.application.ApplicationInfo;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentIterator;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.roots.impl.ModuleRootManagerImpl;
+import com.intellij.openapi.roots.impl.ProjectRootManagerImpl;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.WriteExternalException;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.JarFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
+import com.intellij.openapi.vfs.newvfs.persistent.PersistentFS;
+import com.intellij.packageDependencies.DependenciesBuilder;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorIntegerDescriptor;
+import com.intellij.util.io.PersistentHashMap;
+import gnu.trove.THashSet;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntHashSet;
+import gnu.trove.TIntObjectHashMap;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Remembers between batch inspection runs which local tools have found nothing in a file, so that they are not run on it again
+ * while neither the file, nor the project files it transitively depends on, nor the project model, nor the tool settings,
+ * nor the IDE build have changed.
+ * Only the absence of problems is stored: tools which have reported something are always rerun to get the descriptors
+ * with their PSI elements and quick fixes.
+ * <p/>
+ * The direct dependencies of a file are stored along with its text hash, so they are analyzed only when the file has to be inspected
+ * anyway. Files reached as dependencies only, e.g. from outside of the inspected scope, get such a record too, without clean tools.
+ * The clean tools of a file are stored with a hash of the text of all the files it transitively depends on, as they were when
+ * it was inspected, and they are reused only if the same hash is computed from the current texts and stored dependencies.
+ * Library and SDK changes, as well as added, removed or moved project files, are covered by the project model hash,
+ * a change of which drops the whole cache.
+ */
+class InspectionResultCache {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.codeInspection.ex.InspectionResultCache");
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int VERSION = 2;
+
+  private final Project myProject;
+  private final File myFile;
+  private final PersistentHashMap<Integer, FileState> myStates;
+  private final Map<InspectionToolWrapper, String> myToolKeys = new IdentityHashMap<InspectionToolWrapper, String>();
+  // the current text hashes and direct dependencies, files don't change during a batch run
+  private final TIntObjectHashMap<byte[]> myContentHashes = new TIntObjectHashMap<byte[]>();
+  private final TIntObjectHashMap<int[]> myDependencies = new TIntObjectHashMap<int[]>();
+
+  private InspectionResultCache(@NotNull Project project, @NotNull File file) throws IOException {
+    myProject = project;
+    myFile = file;
+    myStates = new PersistentHashMap<Integer, FileState>(file, EnumeratorIntegerDescriptor.INSTANCE, new FileStateExternalizer());
+  }
+
+  static boolean isEnabled() {
+    return Registry.is("inspection.batch.result.cache");
+  }
+
+  @Nullable
+  static InspectionResultCache open(@NotNull Project project) {
+    File dir = new File(PathManager.getSystemPath() + File.separator + "inspectionResults" + File.separator +
+                        project.getName() + "." + project.getLocationHash());
+    File file = new File(dir, "files");
+    File modelFile = new File(dir, "model");
+    String modelHash = computeProjectModelHash(project);
+    try {
+      if (!modelHash.equals(modelFile.exists() ? FileUtil.loadFile(modelFile) : null)) {
+        PersistentHashMap.deleteFilesStartingWith(file);
+        FileUtil.writeToFile(modelFile, modelHash);
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return null;
+    }
+    try {
+      return new InspectionResultCache(project, file);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      PersistentHashMap.deleteFilesStartingWith(file);
+      try {
+        return new InspectionResultCache(project, file);
+      }
+      catch (IOException e1) {
+        LOG.error(e1);
+        return null;
+      }
+    }
+  }
+
+  /**
+   * @return the current state of the file to look up clean tools with {@link #getCleanTools(FileState)} and to store
+   *         the results with {@link #update}, or null if the file cannot be cached
+   */
+  @Nullable
+  FileState computeState(@NotNull PsiFile file) {
+    VirtualFile virtualFile = file.getVirtualFile();
+    if (!(virtualFile instanceof NewVirtualFile)) return null;
+    int fileId = ((NewVirtualFile)virtualFile).getId();
+    return new FileState(fileId, getContentHash(fileId), null, ArrayUtil.EMPTY_BYTE_ARRAY, Collections.<String>emptySet());
+  }
+
+  /**
+   * @return the keys of the tools which have found nothing in the file when it and its dependencies were in the same state
+   */
+  @NotNull
+  synchronized Set<String> getCleanTools(@NotNull FileState state) {
+    try {
+      FileState stored = myStates.get(state.fileId);
+      if (stored == null || stored.closureHash.length == 0 || !Arrays.equals(stored.contentHash, state.contentHash)) {
+        return Collections.emptySet();
+      }
+      byte[] closureHash = computeClosureHash(state.fileId, null);
+      if (closureHash == null || !Arrays.equals(stored.closureHash, closureHash)) {
+        return Collections.emptySet();
+      }
+      state.dependencies = stored.dependencies;
+      return stored.cleanTools;
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return Collections.emptySet();
+    }
+  }
+
+  synchronized void update(@NotNull PsiFile file, @NotNull FileState state, @NotNull Set<String> cleanTools) {
+    try {
+      int[] dependencies = state.dependencies == null ? collectDependencies(file) : state.dependencies;
+      myDependencies.put(state.fileId, dependencies);
+      byte[] closureHash = computeClosureHash(state.fileId, PsiManager.getInstance(myProject));
+      if (closureHash == null) {
+        closureHash = ArrayUtil.EMPTY_BYTE_ARRAY;
+      }
+      myStates.put(state.fileId, new FileState(state.fileId, state.contentHash, dependencies, closureHash, cleanTools));
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+  }
+
+  /**
+   * @return the short name of the tool combined with a hash of its settings
+   */
+  @NotNull
+  synchronized String getToolKey(@NotNull InspectionToolWrapper toolWrapper) {
+    String key = myToolKeys.get(toolWrapper);
+    if (key == null) {
+      Element settings = new Element("settings");
+      try {
+        toolWrapper.getTool().writeSettings(settings);
+      }
+      catch (WriteExternalException e) {
+        LOG.info(e);
+      }
+      key = toolWrapper.getShortName() + ":" + JDOMUtil.writeElement(settings, "\n").hashCode();
+      myToolKeys.put(toolWrapper, key);
+    }
+    return key;
+  }
+
+  synchronized void close() {
+    try {
+      myStates.close();
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      PersistentHashMap.deleteFilesStartingWith(myFile);
+    }
+  }
+
+  /**
+   * @param psiManager to analyze the dependencies of the files which have no up-to-date record and to store records for them,
+   *                   or null to give up on such files
+   * @return the hash of the ids and texts of the file and all the files it transitively depends on,
+   *         or null if the dependencies of some of them are not known
+   */
+  @Nullable
+  private byte[] computeClosureHash(int fileId, @Nullable PsiManager psiManager) throws IOException {
+    TIntHashSet visited = new TIntHashSet();
+    TIntArrayList toVisit = new TIntArrayList();
+    visited.add(fileId);
+    toVisit.add(fileId);
+    while (!toVisit.isEmpty()) {
+      int[] dependencies = getDependencies(toVisit.remove(toVisit.size() - 1), psiManager);
+      if (dependencies == null) return null;
+      for (int dependency : dependencies) {
+        if (visited.add(dependency)) {
+          toVisit.add(dependency);
+        }
+      }
+    }
+    int[] closure = visited.toArray();
+    Arrays.sort(closure);
+    MessageDigest digest = createDigest();
+    for (int id : closure) {
+      digest.update(new byte[]{(byte)(id >>> 24), (byte)(id >>> 16), (byte)(id >>> 8), (byte)id});
+      digest.update(getContentHash(id));
+    }
+    return digest.digest();
+  }
+
+  // the direct dependencies of the file in its current state, from its record or, if there is none, from its PSI
+  @Nullable
+  private int[] getDependencies(int fileId, @Nullable PsiManager psiManager) throws IOException {
+    int[] dependencies = myDependencies.get(fileId);
+    if (dependencies != null) return dependencies;
+
+    byte[] contentHash = getContentHash(fileId);
+    FileState stored = myStates.get(fileId);
+    if (stored != null && Arrays.equals(stored.contentHash, contentHash)) {
+      dependencies = stored.dependencies;
+    }
+    else if (contentHash.length == 0) {
+      // deleted, it is not reached unless the project model has changed
+      dependencies = ArrayUtil.EMPTY_INT_ARRAY;
+    }
+    else {
+      if (psiManager == null) return null;
+      VirtualFile virtualFile = PersistentFS.getInstance().findFileById(fileId);
+      PsiFile file = virtualFile == null ? null : psiManager.findFile(virtualFile);
+      dependencies = file == null ? ArrayUtil.EMPTY_INT_ARRAY : collectDependencies(file);
+      myStates.put(fileId, new FileState(fileId, contentHash, dependencies, ArrayUtil.EMPTY_BYTE_ARRAY, Collections.<String>emptySet()));
+    }
+    myDependencies.put(fileId, dependencies);
+    return dependencies;
+  }
+
+  @NotNull
+  private byte[] getContentHash(int fileId) {
+    byte[] hash = myContentHashes.get(fileId);
+    if (hash == null) {
+      VirtualFile file = PersistentFS.getInstance().findFileById(fileId);
+      if (file == null || !file.isValid() || file.isDirectory()) {
+        hash = ArrayUtil.EMPTY_BYTE_ARRAY;
+      }
+      else {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        CharSequence text = document == null ? LoadTextUtil.loadText(file) : document.getCharsSequence();
+        hash = createDigest().digest(text.toString().getBytes(UTF_8));
+      }
+      myContentHashes.put(fileId, hash);
+    }
+    return hash;
+  }
+
+  @NotNull
+  private int[] collectDependencies(@NotNull final PsiFile file) {
+    final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+    final TIntHashSet dependencies = new TIntHashSet();
+    DependenciesBuilder.analyzeFileDependencies(file, new DependenciesBuilder.DependencyProcessor() {
+      @Override
+      public void process(PsiElement place, PsiElement dependency) {
+        PsiFile dependencyFile = dependency.getContainingFile();
+        VirtualFile dependencyVirtualFile = dependencyFile == null ? null : dependencyFile.getVirtualFile();
+        // library and SDK files are covered by the project model hash
+        if (dependencyVirtualFile instanceof NewVirtualFile && dependencyFile != file && fileIndex.isInContent(dependencyVirtualFile)) {
+          dependencies.add(((NewVirtualFile)dependencyVirtualFile).getId());
+        }
+      }
+    });
+    return dependencies.toArray();
+  }
+
+  // the cache format, the IDE build, the module and project roots and settings (e.g. SDK and language level), the library roots and the list of project files
+  @NotNull
+  private static String computeProjectModelHash(@NotNull final Project project) {
+    final MessageDigest digest = createDigest();
+    digest.update((VERSION + ":" + ApplicationInfo.getInstance().getBuild().asString()).getBytes(UTF_8));
+    ApplicationManager.getApplication().runReadAction(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Element projectRoots = new Element("project");
+          ((ProjectRootManagerImpl)ProjectRootManager.getInstance(project)).writeExternal(projectRoots);
+          digest.update(JDOMUtil.writeElement(projectRoots, "\n").getBytes(UTF_8));
+          for (Module module : ModuleManager.getInstance(project).getSortedModules()) {
+            Element moduleRoots = new Element("module");
+            moduleRoots.setAttribute("name", module.getName());
+            ((ModuleRootManagerImpl)ModuleRootManager.getInstance(module)).getState().writeExternal(moduleRoots);
+            digest.update(JDOMUtil.writeElement(moduleRoots, "\n").getBytes(UTF_8));
+          }
+        }
+        catch (WriteExternalException e) {
+          LOG.info(e);
+        }
+
+        for (VirtualFile root : OrderEnumerator.orderEntries(project).getAllLibrariesAndSdkClassesRoots()) {
+          VirtualFile jar = JarFileSystem.getInstance().getVirtualFileForJar(root);
+          VirtualFile stamped = jar == null ? root : jar;
+          digest.update((root.getUrl() + ":" + stamped.getTimeStamp() + ":" + stamped.getLength()).getBytes(UTF_8));
+        }
+
+        final List<String> urls = new ArrayList<String>();
+        ProjectRootManager.getInstance(project).getFileIndex().iterateContent(new ContentIterator() {
+          @Override
+          public boolean processFile(VirtualFile fileOrDir) {
+            if (!fileOrDir.isDirectory()) {
+              urls.add(fileOrDir.getUrl());
+            }
+            return true;
+          }
+        });
+        Collections.sort(urls);
+        for (String url : urls) {
+          digest.update(url.getBytes(UTF_8));
+        }
+      }
+    });
+    return new BigInteger(1, digest.digest()).toString(16);
+  }
+
+  @NotNull
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  static class FileState {
+    private final int fileId;
+    private final byte[] contentHash;
+    private int[] dependencies; // the ids of the project files this one directly depends on, null until known
+    private final byte[] closureHash; // empty for the files stored as dependencies only
+    private final Set<String> cleanTools;
+
+    private FileState(int fileId,
+                      @NotNull byte[] contentHash,
+                      @Nullable int[] dependencies,
+                      @NotNull byte[] closureHash,
+                      @NotNull Set<String> cleanTools) {
+      this.fileId = fileId;
+      this.contentHash = contentHash;
+      this.dependencies = dependencies;
+      this.closureHash = closureHash;
+      this.cleanTools = cleanTools;
+    }
+  }
+
+  private static class FileStateExternalizer implements DataExternalizer<FileState> {
+    @Override
+    public void save(DataOutput out, FileState state) throws IOException {
+      out.writeInt(state.fileId);
+      writeBytes(out, state.contentHash);
+      out.writeInt(state.dependencies.length);
+      for (int dependency : state.dependencies) {
+        out.writeInt(dependency);
+      }
+      writeBytes(out, state.closureHash);
+      out.writeInt(state.cleanTools.size());
+      for (String tool : state.cleanTools) {
+        out.writeUTF(tool);
+      }
+    }
+
+    @Override
+    public FileState read(DataInput in) throws IOException {
+      int fileId = in.readInt();
+      byte[] contentHash = readBytes(in);
+      int[] dependencies = new int[in.readInt()];
+      for (int i = 0; i < dependencies.length; i++) {
+        dependencies[i] = in.readInt();
+      }
+      byte[] closureHash = readBytes(in);
+      int size = in.readInt();
+      Set<String> cleanTools = new THashSet<String>(size);
+      for (int i = 0; i < size; i++) {
+        cleanTools.add(in.readUTF());
+      }
+      return new FileState(fileId, contentHash, dependencies, closureHash, cleanTools);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      return bytes;
+    }
+  }
+}
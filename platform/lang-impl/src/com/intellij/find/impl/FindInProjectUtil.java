@@ -17,7 +17,9 @@
 package com.intellij.find.impl;
 
 import com.intellij.BundleBase;
+import com.intellij.concurrency.JobLauncher;
 import com.intellij.find.*;
+import com.intellij.find.ngrams.RegExpTrigramQuery;
 import com.intellij.find.ngrams.TrigramIndex;
 import com.intellij.navigation.ItemPresentation;
 import com.intellij.openapi.actionSystem.DataContext;
@@ -29,6 +31,7 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
 import com.intellij.openapi.fileTypes.FileTypeManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
@@ -73,6 +76,9 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 public class FindInProjectUtil {
@@ -209,51 +215,71 @@ public class FindInProjectUtil {
 
     final Collection<PsiFile> psiFiles = getFilesToSearchIn(findModel, project, psiDirectory);
     try {
-      final Set<PsiFile> largeFiles = new THashSet<PsiFile>();
+      final Set<PsiFile> largeFiles = Collections.synchronizedSet(new THashSet<PsiFile>());
 
-      int i = 0;
-      long totalFilesSize = 0;
-      int count = 0;
-      final boolean[] warningShown = {false};
+      final AtomicInteger processedFiles = new AtomicInteger();
+      final AtomicLong totalFilesSize = new AtomicLong();
+      final AtomicInteger count = new AtomicInteger();
+      final AtomicBoolean warningShown = new AtomicBoolean();
 
-      for (final PsiFile psiFile : psiFiles) {
-        final VirtualFile virtualFile = psiFile.getVirtualFile();
-        final int index = i++;
-        if (virtualFile == null) continue;
+      final boolean parallel = Registry.is("find.in.path.parallel") && psiFiles.size() > 1;
+      final Processor<UsageInfo> usageConsumer = parallel ? new Processor<UsageInfo>() {
+        @Override
+        public boolean process(UsageInfo info) {
+          synchronized (this) {
+            return consumer.process(info);
+          }
+        }
+      } : consumer;
 
-        long fileLength = UsageViewManagerImpl.getFileLength(virtualFile);
-        if (fileLength == -1) continue; // Binary or invalid
+      Processor<PsiFile> fileProcessor = new Processor<PsiFile>() {
+        @Override
+        public boolean process(PsiFile psiFile) {
+          final VirtualFile virtualFile = psiFile.getVirtualFile();
+          final int index = processedFiles.getAndIncrement();
+          if (virtualFile == null) return true;
 
-        if (ProjectCoreUtil.isProjectOrWorkspaceFile(virtualFile) && !Registry.is("find.search.in.project.files")) continue;
+          long fileLength = UsageViewManagerImpl.getFileLength(virtualFile);
+          if (fileLength == -1) return true; // Binary or invalid
 
-        if (fileLength > SINGLE_FILE_SIZE_LIMIT) {
-          largeFiles.add(psiFile);
-          continue;
-        }
+          if (ProjectCoreUtil.isProjectOrWorkspaceFile(virtualFile) && !Registry.is("find.search.in.project.files")) return true;
 
-        if (progress != null) {
-          progress.checkCanceled();
-          progress.setFraction((double)index / psiFiles.size());
-          String text = FindBundle.message("find.searching.for.string.in.file.progress",
-                                           findModel.getStringToFind(), virtualFile.getPresentableUrl());
-          progress.setText(text);
-          progress.setText2(FindBundle.message("find.searching.for.string.in.file.occurrences.progress", count));
-        }
+          if (fileLength > SINGLE_FILE_SIZE_LIMIT) {
+            largeFiles.add(psiFile);
+            return true;
+          }
+
+          if (progress != null) {
+            progress.checkCanceled();
+            progress.setFraction((double)index / psiFiles.size());
+            String text = FindBundle.message("find.searching.for.string.in.file.progress",
+                                             findModel.getStringToFind(), virtualFile.getPresentableUrl());
+            progress.setText(text);
+            progress.setText2(FindBundle.message("find.searching.for.string.in.file.occurrences.progress", count.get()));
+          }
 
-        int countInFile = processUsagesInFile(psiFile, findModel, consumer);
+          int countInFile = processUsagesInFile(psiFile, findModel, usageConsumer);
 
-        count += countInFile;
-        if (countInFile > 0) {
-          totalFilesSize += fileLength;
-          if (totalFilesSize > FILES_SIZE_LIMIT && !warningShown[0]) {
-            warningShown[0] = true;
-            String message = FindBundle.message("find.excessive.total.size.prompt", UsageViewManagerImpl.presentableSize(totalFilesSize),
-                                                ApplicationNamesInfo.getInstance().getProductName());
-            UsageLimitUtil.showAndCancelIfAborted(project, message);
+          count.addAndGet(countInFile);
+          if (countInFile > 0) {
+            long size = totalFilesSize.addAndGet(fileLength);
+            if (size > FILES_SIZE_LIMIT && warningShown.compareAndSet(false, true)) {
+              String message = FindBundle.message("find.excessive.total.size.prompt", UsageViewManagerImpl.presentableSize(size),
+                                                  ApplicationNamesInfo.getInstance().getProductName());
+              UsageLimitUtil.showAndCancelIfAborted(project, message);
+            }
           }
+          return true;
         }
-      }
+      };
 
+      if (parallel) {
+        // usages are found in read actions of their own, so the workers must not hold one for the whole file
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(new ArrayList<PsiFile>(psiFiles), progress, false, false, fileProcessor);
+      }
+      else {
+        ContainerUtil.process(psiFiles, fileProcessor);
+      }
 
       if (!largeFiles.isEmpty()) {
         processPresentation.setLargeFilesWereNotScanned(largeFiles);
@@ -285,8 +311,10 @@ public class FindInProjectUtil {
     final VirtualFile virtualFile = psiFile.getVirtualFile();
     if (virtualFile == null) return 0;
     if (virtualFile.getFileType().isBinary()) return 0; // do not decompile .class files
-    final Document document = FileDocumentManager.getInstance().getDocument(virtualFile);
-    if (document == null) return 0;
+    // files without a document are searched in their loaded text, so that a document (which stays reachable
+    // until the search ends) is created by the usages only for the files which contain an occurrence
+    final Document document = FileDocumentManager.getInstance().getCachedDocument(virtualFile);
+    final CharSequence loadedText = document == null ? LoadTextUtil.loadText(virtualFile) : null;
     final int[] offset = {0};
     int count = 0;
     int found;
@@ -296,7 +324,8 @@ public class FindInProjectUtil {
         @NotNull
         public Integer compute() {
           if (!psiFile.isValid()) return 0;
-          return addToUsages(document, consumer, findModel, psiFile, offset, USAGES_PER_READ_ACTION);
+          CharSequence text = document == null ? loadedText : document.getCharsSequence();
+          return addToUsages(text, consumer, findModel, psiFile, offset, USAGES_PER_READ_ACTION);
         }
       });
       count += found;
@@ -442,6 +471,17 @@ public class FindInProjectUtil {
     boolean fast = false;
 
     String stringToFind = findModel.getStringToFind();
+    if (findModel.isRegularExpressions()) {
+      // words of the pattern are not the words of the text, only the literal fragments of the pattern can be looked up
+      RegExpTrigramQuery query = TrigramIndex.ENABLED ? RegExpTrigramQuery.parse(stringToFind) : null;
+      Set<VirtualFile> hits = query == null || !query.canFilter() ? null : query.findCandidateFiles(scope);
+      if (hits == null) return new Pair<Boolean, Collection<PsiFile>>(false, Collections.<PsiFile>emptyList());
+      for (VirtualFile hit : hits) {
+        ContainerUtil.addIfNotNull(resultFiles, pm.findFile(hit));
+      }
+      filterMaskedFiles(resultFiles, fileMaskRegExp);
+      return new Pair<Boolean, Collection<PsiFile>>(true, resultFiles);
+    }
     if (TrigramIndex.ENABLED) {
       TIntHashSet trigrams = TrigramBuilder.buildTrigram(stringToFind);
       TIntIterator it = trigrams.iterator();
@@ -531,15 +571,14 @@ public class FindInProjectUtil {
   }
 
   private static boolean canOptimizeForFastWordSearch(@NotNull final FindModel findModel) {
-    return !findModel.isRegularExpressions()
+    return (!findModel.isRegularExpressions() || TrigramIndex.ENABLED)
            && (findModel.getCustomScope() == null || findModel.getCustomScope() instanceof GlobalSearchScope);
   }
 
-  private static int addToUsages(@NotNull Document document, @NotNull Processor<UsageInfo> consumer, @NotNull FindModel findModel,
+  private static int addToUsages(@NotNull CharSequence text, @NotNull Processor<UsageInfo> consumer, @NotNull FindModel findModel,
                                  @NotNull final PsiFile psiFile, int[] offsetRef, int maxUsages) {
     int count = 0;
-    CharSequence text = document.getCharsSequence();
-    int textLength = document.getTextLength();
+    int textLength = text.length();
     int offset = offsetRef[0];
 
     Project project = psiFile.getProject();
@@ -0,0 +1,480 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.find.ngrams;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.util.text.TrigramBuilder;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.indexing.FileBasedIndex;
+import gnu.trove.THashSet;
+import gnu.trove.TIntHashSet;
+import gnu.trove.TIntProcedure;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The literal fragments which every match of a regular expression contains, as a tree of AND and OR nodes over the fragments.
+ * {@link #findCandidateFiles(GlobalSearchScope)} evaluates the tree against the {@link TrigramIndex}, so that only the files
+ * which may contain a match have to be loaded and searched.
+ * <p/>
+ * The parser understands the java.util.regex syntax conservatively: everything it cannot reason about (character classes,
+ * back references, lookarounds and so on) only separates the fragments, so the query may match more files than necessary
+ * but never misses one.
+ */
+public class RegExpTrigramQuery {
+  private static final RegExpTrigramQuery ANY = new RegExpTrigramQuery(null, false, Collections.<RegExpTrigramQuery>emptyList(), false);
+
+  @Nullable private final String myLiteral;
+  private final boolean myAnd;
+  @NotNull private final List<RegExpTrigramQuery> myChildren;
+  /**
+   * true if the literal is the whole text matched, so that it can be concatenated with the neighbouring literals
+   */
+  private final boolean myExact;
+
+  private RegExpTrigramQuery(@Nullable String literal, boolean and, @NotNull List<RegExpTrigramQuery> children, boolean exact) {
+    myLiteral = literal;
+    myAnd = and;
+    myChildren = children;
+    myExact = exact;
+  }
+
+  /**
+   * @return the query, or null if the expression uses a syntax which changes the meaning of the literals (e.g. the comments flag)
+   *         or is not valid
+   */
+  @Nullable
+  public static RegExpTrigramQuery parse(@NotNull String regExp) {
+    Parser parser = new Parser(regExp);
+    try {
+      RegExpTrigramQuery query = parser.parseAlternation();
+      return parser.myOffset == regExp.length() ? query : null;
+    }
+    catch (UnsupportedSyntaxException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return false if the query has no fragments long enough to be looked up in the index, so every file may contain a match
+   */
+  public boolean canFilter() {
+    if (myLiteral != null) return myLiteral.length() >= 3;
+    if (myAnd) {
+      for (RegExpTrigramQuery child : myChildren) {
+        if (child.canFilter()) return true;
+      }
+      return false;
+    }
+    for (RegExpTrigramQuery child : myChildren) {
+      if (!child.canFilter()) return false;
+    }
+    return !myChildren.isEmpty();
+  }
+
+  /**
+   * @return the files in the scope which contain the fragments the query requires, or null if the query cannot restrict the files
+   */
+  @Nullable
+  public Set<VirtualFile> findCandidateFiles(@NotNull GlobalSearchScope scope) {
+    if (myLiteral != null) {
+      TIntHashSet trigrams = TrigramBuilder.buildTrigram(myLiteral);
+      if (trigrams.isEmpty()) return null;
+      final Set<Integer> keys = new THashSet<Integer>(trigrams.size());
+      trigrams.forEach(new TIntProcedure() {
+        @Override
+        public boolean execute(int value) {
+          keys.add(value);
+          return true;
+        }
+      });
+      Set<VirtualFile> files = new THashSet<VirtualFile>();
+      FileBasedIndex.getInstance().getFilesWithKey(TrigramIndex.INDEX_ID, keys, new CommonProcessors.CollectProcessor<VirtualFile>(files), scope);
+      return files;
+    }
+    if (myAnd) {
+      Set<VirtualFile> result = null;
+      for (RegExpTrigramQuery child : myChildren) {
+        Set<VirtualFile> files = child.findCandidateFiles(scope);
+        if (files == null) continue;
+        if (result == null) {
+          result = files;
+        }
+        else {
+          result.retainAll(files);
+        }
+        if (result.isEmpty()) break;
+      }
+      return result;
+    }
+    if (myChildren.isEmpty()) return null;
+    Set<VirtualFile> result = new THashSet<VirtualFile>();
+    for (RegExpTrigramQuery child : myChildren) {
+      Set<VirtualFile> files = child.findCandidateFiles(scope);
+      if (files == null) return null;
+      result.addAll(files);
+    }
+    return result;
+  }
+
+  @NonNls
+  @Override
+  public String toString() {
+    if (myLiteral != null) return "'" + myLiteral + "'";
+    if (myChildren.isEmpty()) return "*";
+    return (myAnd ? "and" : "or") + "(" + StringUtil.join(myChildren, ", ") + ")";
+  }
+
+  @NotNull
+  private static RegExpTrigramQuery literal(@NotNull String literal, boolean exact) {
+    return new RegExpTrigramQuery(literal, false, Collections.<RegExpTrigramQuery>emptyList(), exact);
+  }
+
+  @NotNull
+  private static RegExpTrigramQuery and(@NotNull List<RegExpTrigramQuery> children) {
+    List<RegExpTrigramQuery> required = new ArrayList<RegExpTrigramQuery>(children.size());
+    for (RegExpTrigramQuery child : children) {
+      if (child == ANY) continue;
+      if (child.myLiteral == null && child.myAnd) {
+        required.addAll(child.myChildren);
+      }
+      else {
+        required.add(child);
+      }
+    }
+    if (required.isEmpty()) return ANY;
+    if (required.size() == 1) return required.get(0);
+    return new RegExpTrigramQuery(null, true, required, false);
+  }
+
+  @NotNull
+  private static RegExpTrigramQuery or(@NotNull List<RegExpTrigramQuery> children) {
+    if (children.size() == 1) return children.get(0);
+    for (RegExpTrigramQuery child : children) {
+      if (child == ANY) return ANY;
+    }
+    return new RegExpTrigramQuery(null, false, children, false);
+  }
+
+  private static class UnsupportedSyntaxException extends Exception {
+  }
+
+  private static class Parser {
+    private final String myText;
+    private int myOffset;
+
+    private Parser(@NotNull String text) {
+      myText = text;
+    }
+
+    @NotNull
+    private RegExpTrigramQuery parseAlternation() throws UnsupportedSyntaxException {
+      List<RegExpTrigramQuery> alternatives = new ArrayList<RegExpTrigramQuery>();
+      alternatives.add(parseSequence());
+      while (myOffset < myText.length() && myText.charAt(myOffset) == '|') {
+        myOffset++;
+        alternatives.add(parseSequence());
+      }
+      return or(alternatives);
+    }
+
+    @NotNull
+    private RegExpTrigramQuery parseSequence() throws UnsupportedSyntaxException {
+      List<RegExpTrigramQuery> parts = new ArrayList<RegExpTrigramQuery>();
+      StringBuilder run = new StringBuilder();
+      boolean exact = true;
+      while (myOffset < myText.length()) {
+        char c = myText.charAt(myOffset);
+        if (c == '|' || c == ')') break;
+
+        int runLength = run.length();
+        RegExpTrigramQuery atom = parseAtom();
+        if (atom == null) {
+          // zero-width assertion
+          flush(run, parts);
+          exact = false;
+          continue;
+        }
+        if (atom.myExact) {
+          run.append(atom.myLiteral);
+        }
+        else {
+          flush(run, parts);
+          exact = false;
+          parts.add(atom);
+        }
+
+        int[] repetition = parseQuantifier();
+        if (repetition == null) continue;
+        if (repetition[0] == 0) {
+          // optional atom is not required
+          if (atom.myExact) {
+            run.setLength(runLength);
+          }
+          else {
+            parts.remove(parts.size() - 1);
+          }
+        }
+        if (repetition[0] != 1 || repetition[1] != 1) {
+          flush(run, parts);
+          exact = false;
+        }
+      }
+      if (exact) {
+        return literal(run.toString(), true);
+      }
+      flush(run, parts);
+      return and(parts);
+    }
+
+    private static void flush(@NotNull StringBuilder run, @NotNull List<RegExpTrigramQuery> parts) {
+      if (run.length() == 0) return;
+      parts.add(literal(run.toString(), false));
+      run.setLength(0);
+    }
+
+    /**
+     * @return the atom at the current offset, an exact literal for a single character, or null for a zero-width assertion
+     */
+    @Nullable
+    private RegExpTrigramQuery parseAtom() throws UnsupportedSyntaxException {
+      char c = myText.charAt(myOffset++);
+      switch (c) {
+        case '(':
+          return parseGroup();
+        case '[':
+          skipCharacterClass();
+          return ANY;
+        case '.':
+          return ANY;
+        case '^':
+        case '$':
+          return null;
+        case '\\':
+          return parseEscape();
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+          throw new UnsupportedSyntaxException();
+        default:
+          return literal(String.valueOf(c), true);
+      }
+    }
+
+    @Nullable
+    private RegExpTrigramQuery parseGroup() throws UnsupportedSyntaxException {
+      boolean lookaround = false;
+      if (myText.startsWith("?", myOffset)) {
+        myOffset++;
+        if (myOffset >= myText.length()) throw new UnsupportedSyntaxException();
+        char kind = myText.charAt(myOffset);
+        if (kind == ':' || kind == '>') {
+          myOffset++;
+        }
+        else if (kind == '=' || kind == '!') {
+          myOffset++;
+          lookaround = true;
+        }
+        else if (kind == '<') {
+          myOffset++;
+          if (myText.startsWith("=", myOffset) || myText.startsWith("!", myOffset)) {
+            myOffset++;
+            lookaround = true;
+          }
+          else {
+            // named group
+            int end = myText.indexOf('>', myOffset);
+            if (end < 0) throw new UnsupportedSyntaxException();
+            myOffset = end + 1;
+          }
+        }
+        else {
+          // inline flags, either (?flags) or (?flags:X)
+          while (myOffset < myText.length() && myText.charAt(myOffset) != ')' && myText.charAt(myOffset) != ':') {
+            if (myText.charAt(myOffset) == 'x') throw new UnsupportedSyntaxException(); // whitespace and comments are ignored
+            myOffset++;
+          }
+          if (myOffset >= myText.length()) throw new UnsupportedSyntaxException();
+          if (myText.charAt(myOffset++) == ')') return null;
+        }
+      }
+      RegExpTrigramQuery query = parseAlternation();
+      if (!myText.startsWith(")", myOffset)) throw new UnsupportedSyntaxException();
+      myOffset++;
+      return lookaround ? null : query;
+    }
+
+    private void skipCharacterClass() throws UnsupportedSyntaxException {
+      int depth = 1;
+      if (myText.startsWith("^", myOffset)) myOffset++;
+      if (myText.startsWith("]", myOffset)) myOffset++;
+      while (myOffset < myText.length()) {
+        char c = myText.charAt(myOffset++);
+        if (c == '\\') {
+          myOffset++;
+        }
+        else if (c == '[') {
+          depth++;
+        }
+        else if (c == ']' && --depth == 0) {
+          return;
+        }
+      }
+      throw new UnsupportedSyntaxException();
+    }
+
+    @NotNull
+    private RegExpTrigramQuery parseEscape() throws UnsupportedSyntaxException {
+      if (myOffset >= myText.length()) throw new UnsupportedSyntaxException();
+      char c = myText.charAt(myOffset++);
+      switch (c) {
+        case 't':
+          return literal("\t", true);
+        case 'n':
+          return literal("\n", true);
+        case 'r':
+          return literal("\r", true);
+        case 'f':
+          return literal("\f", true);
+        case 'a':
+          return literal("\u0007", true);
+        case 'e':
+          return literal("\u001B", true);
+        case 'x':
+          if (myText.startsWith("{", myOffset)) {
+            int end = myText.indexOf('}', myOffset);
+            if (end < 0) throw new UnsupportedSyntaxException();
+            String hex = myText.substring(myOffset + 1, end);
+            myOffset = end + 1;
+            return codePoint(hex);
+          }
+          return hexCharacter(2);
+        case 'u':
+          return hexCharacter(4);
+        case 'Q':
+          int end = myText.indexOf("\\E", myOffset);
+          String quoted = myText.substring(myOffset, end < 0 ? myText.length() : end);
+          myOffset = end < 0 ? myText.length() : end + 2;
+          return literal(quoted, true);
+        case 'c':
+          // control character
+          myOffset++;
+          return ANY;
+        case 'p':
+        case 'P':
+        case 'k':
+          if (myText.startsWith("{", myOffset) || myText.startsWith("<", myOffset)) {
+            int close = myText.indexOf(myText.charAt(myOffset) == '{' ? '}' : '>', myOffset);
+            if (close < 0) throw new UnsupportedSyntaxException();
+            myOffset = close + 1;
+          }
+          else {
+            myOffset++;
+          }
+          return ANY;
+        case 'b':
+        case 'B':
+        case 'A':
+        case 'G':
+        case 'Z':
+        case 'z':
+          // zero-width, but it does not hurt to treat it as an unknown character
+          return ANY;
+        default:
+          if (Character.isLetterOrDigit(c)) {
+            // character classes, back references, octal escapes and so on
+            while (c >= '0' && c <= '9' && myOffset < myText.length() && Character.isDigit(myText.charAt(myOffset))) {
+              myOffset++;
+            }
+            return ANY;
+          }
+          return literal(String.valueOf(c), true);
+      }
+    }
+
+    @NotNull
+    private RegExpTrigramQuery hexCharacter(int length) throws UnsupportedSyntaxException {
+      if (myOffset + length > myText.length()) throw new UnsupportedSyntaxException();
+      String hex = myText.substring(myOffset, myOffset + length);
+      myOffset += length;
+      return codePoint(hex);
+    }
+
+    @NotNull
+    private static RegExpTrigramQuery codePoint(@NotNull String hex) throws UnsupportedSyntaxException {
+      try {
+        return literal(new String(Character.toChars(Integer.parseInt(hex, 16))), true);
+      }
+      catch (IllegalArgumentException e) {
+        throw new UnsupportedSyntaxException();
+      }
+    }
+
+    /**
+     * @return the minimum and maximum (-1 for unbounded) number of repetitions of the preceding atom, or null if there is no quantifier
+     */
+    @Nullable
+    private int[] parseQuantifier() throws UnsupportedSyntaxException {
+      if (myOffset >= myText.length()) return null;
+      int[] result;
+      char c = myText.charAt(myOffset);
+      if (c == '?') {
+        result = new int[]{0, 1};
+        myOffset++;
+      }
+      else if (c == '*') {
+        result = new int[]{0, -1};
+        myOffset++;
+      }
+      else if (c == '+') {
+        result = new int[]{1, -1};
+        myOffset++;
+      }
+      else if (c == '{') {
+        int end = myText.indexOf('}', myOffset);
+        if (end < 0) throw new UnsupportedSyntaxException();
+        String bounds = myText.substring(myOffset + 1, end);
+        int comma = bounds.indexOf(',');
+        try {
+          int min = Integer.parseInt((comma < 0 ? bounds : bounds.substring(0, comma)).trim());
+          int max = comma < 0 ? min : comma == bounds.length() - 1 ? -1 : Integer.parseInt(bounds.substring(comma + 1).trim());
+          result = new int[]{min, max};
+        }
+        catch (NumberFormatException e) {
+          throw new UnsupportedSyntaxException();
+        }
+        myOffset = end + 1;
+      }
+      else {
+        return null;
+      }
+      // reluctant and possessive quantifiers
+      if (myOffset < myText.length() && (myText.charAt(myOffset) == '?' || myText.charAt(myOffset) == '+')) {
+        myOffset++;
+      }
+      return result;
+    }
+  }
+}
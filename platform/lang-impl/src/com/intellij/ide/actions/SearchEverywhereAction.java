@@ -48,6 +48,7 @@ import com.intellij.openapi.util.ActionCallback;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -63,6 +64,7 @@ import com.intellij.ui.components.OnOffButton;
 import com.intellij.util.Alarm;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.Consumer;
+import com.intellij.util.containers.FList;
 import com.intellij.util.ui.EmptyIcon;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NotNull;
@@ -833,7 +835,10 @@ public class SearchEverywhereAction extends AnAction implements CustomComponentA
           }
         }
         else {
-          result = matcher.matches(name) ? new MatchResult(name, matcher.matchingDegree(name), matcher.isStartMatch(name)) : null;
+          FList<TextRange> fragments = matcher.matchingFragments(name);
+          if (fragments != null) {
+            result = new MatchResult(name, matcher.matchingDegree(name, fragments), MinusculeMatcher.isStartMatch(fragments));
+          }
         }
 
         if (result != null) {
@@ -21,6 +21,7 @@ import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiCompiledElement;
 import com.intellij.psi.PsiElement;
@@ -29,6 +30,7 @@ import com.intellij.psi.codeStyle.NameUtil;
 import com.intellij.psi.util.proximity.PsiProximityComparator;
 import com.intellij.util.*;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.FList;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -39,7 +41,10 @@ import java.util.*;
 
 public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider {
   private static final Logger LOG = Logger.getInstance("#com.intellij.ide.util.gotoByName.ChooseByNameIdea");
+  // the characters MinusculeMatcher treats as hard separators unless the pattern has humps or separators itself
+  private static final String HARD_SEPARATORS = " ()";
   private final Reference<PsiElement> myContext;
+  private volatile LastMatch myLastMatch;
 
   public DefaultChooseByNameItemProvider(PsiElement context) {
     myContext = new WeakReference<PsiElement>(context);
@@ -61,7 +66,12 @@ public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider
     List<MatchResult> namesList = new ArrayList<MatchResult>();
     String[] names = base.getNames(everywhere);
     CollectConsumer<MatchResult> collect = new SynchronizedCollectConsumer<MatchResult>(namesList);
-    processNamesByPattern(base, names, matchingPattern, indicator, collect);
+    if (base.getModel() instanceof CustomMatcherModel) {
+      processNamesByPattern(base, names, matchingPattern, indicator, collect);
+    }
+    else {
+      processNamesNarrowing(base, names, matchingPattern, indicator, collect);
+    }
 
     indicator.checkCanceled();
     sortNamesList(matchingPattern, (List<MatchResult>)collect.getResult());
@@ -252,11 +262,53 @@ public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider
     }
   }
 
-  private static void processNamesByPattern(@NotNull final ChooseByNameBase base,
-                                            @NotNull final String[] names,
-                                            @NotNull final String pattern,
-                                            final ProgressIndicator indicator,
-                                            @NotNull final Consumer<MatchResult> consumer) {
+  /**
+   * Same as {@link #processNamesByPattern}, but when the pattern extends the previous one, only the names
+   * matching the previous pattern are checked: a name matching a longer pattern also matches its prefix,
+   * unless the pattern contains a space or the name contains a hard separator. A longer pattern may get humps or separators
+   * and then match across parentheses and spaces, e.g. "ABc" matches "A(Bc)" while "AB" doesn't,
+   * so the names with hard separators are always rechecked.
+   */
+  private void processNamesNarrowing(@NotNull ChooseByNameBase base,
+                                     @NotNull String[] names,
+                                     @NotNull String pattern,
+                                     ProgressIndicator indicator,
+                                     @NotNull final Consumer<MatchResult> consumer) {
+    LastMatch lastMatch = myLastMatch;
+    String[] candidates = names;
+    if (lastMatch != null && lastMatch.allNames == names && pattern.startsWith(lastMatch.pattern) && pattern.indexOf(' ') < 0) {
+      candidates = lastMatch.candidates;
+    }
+
+    final List<String> matched = Collections.synchronizedList(new ArrayList<String>());
+    for (String name : candidates) {
+      if (name != null && hasHardSeparators(name)) {
+        matched.add(name);
+      }
+    }
+    boolean completed = processNamesByPattern(base, candidates, pattern, indicator, new Consumer<MatchResult>() {
+      @Override
+      public void consume(MatchResult result) {
+        if (!hasHardSeparators(result.elementName)) {
+          matched.add(result.elementName);
+        }
+        consumer.consume(result);
+      }
+    });
+    if (completed) {
+      myLastMatch = new LastMatch(names, pattern, ArrayUtil.toStringArray(matched));
+    }
+  }
+
+  private static boolean hasHardSeparators(@NotNull String name) {
+    return StringUtil.containsAnyChar(name, HARD_SEPARATORS);
+  }
+
+  private static boolean processNamesByPattern(@NotNull final ChooseByNameBase base,
+                                               @NotNull final String[] names,
+                                               @NotNull final String pattern,
+                                               final ProgressIndicator indicator,
+                                               @NotNull final Consumer<MatchResult> consumer) {
     final MinusculeMatcher matcher = buildPatternMatcher(pattern, NameUtil.MatchingCaseSensitivity.NONE);
     Processor<String> processor = new Processor<String>() {
       @Override
@@ -269,7 +321,7 @@ public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider
         return true;
       }
     };
-    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(Arrays.asList(names), indicator, false, false, processor);
+    return JobLauncher.getInstance().invokeConcurrentlyUnderProgress(Arrays.asList(names), indicator, false, false, processor);
   }
 
   @NotNull
@@ -317,7 +369,10 @@ public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider
         return null; // no matches appears valid result for "bad" pattern
       }
     }
-    return matcher.matches(name) ? new MatchResult(name, matcher.matchingDegree(name), matcher.isStartMatch(name)) : null;
+    FList<TextRange> fragments = matcher.matchingFragments(name);
+    if (fragments == null) return null;
+
+    return new MatchResult(name, matcher.matchingDegree(name, fragments), MinusculeMatcher.isStartMatch(fragments));
   }
 
   @NotNull
@@ -325,6 +380,18 @@ public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider
     return NameUtil.buildMatcher(pattern, caseSensitivity);
   }
 
+  private static class LastMatch {
+    private final String[] allNames;
+    private final String pattern;
+    private final String[] candidates;
+
+    private LastMatch(@NotNull String[] allNames, @NotNull String pattern, @NotNull String[] candidates) {
+      this.allNames = allNames;
+      this.pattern = pattern;
+      this.candidates = candidates;
+    }
+  }
+
   private static class PathProximityComparator implements Comparator<Object> {
     @NotNull private final PsiProximityComparator myProximityComparator;
 
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.internal;
+
+import com.intellij.codeInsight.daemon.impl.DaemonLatencyStatistics;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Shows percentiles of the time from a document change to the moment each highlighting pass has applied its results.
+ */
+public class ShowDaemonLatencyAction extends AnAction implements DumbAware {
+  public ShowDaemonLatencyAction() {
+    super("Show Highlighting Latency");
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    new LatencyDialog(e.getData(PlatformDataKeys.PROJECT), "Highlighting Latency", DaemonLatencyStatistics.getInstance().dump()).show();
+  }
+
+  static class LatencyDialog extends DialogWrapper {
+    private final String myTable;
+
+    LatencyDialog(@Nullable Project project, @NotNull String title, @NotNull String table) {
+      super(project, false);
+      myTable = table;
+      setTitle(title);
+      setOKButtonText("Close");
+      init();
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+      JTextArea text = new JTextArea(myTable);
+      text.setEditable(false);
+      text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, UIUtil.getLabelFont().getSize()));
+      JBScrollPane pane = new JBScrollPane(text);
+      pane.setPreferredSize(new Dimension(600, 300));
+      return pane;
+    }
+
+    @Override
+    protected Action[] createActions() {
+      return new Action[]{getOKAction()};
+    }
+  }
+}
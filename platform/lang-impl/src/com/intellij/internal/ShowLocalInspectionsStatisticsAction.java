@@ -0,0 +1,37 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.internal;
+
+import com.intellij.codeInsight.daemon.impl.LocalInspectionsStatistics;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.project.DumbAware;
+
+/**
+ * Shows the CPU time, visited elements and problems of each local inspection tool, the slowest first.
+ */
+public class ShowLocalInspectionsStatisticsAction extends AnAction implements DumbAware {
+  public ShowLocalInspectionsStatisticsAction() {
+    super("Show Local Inspections Statistics");
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    new ShowDaemonLatencyAction.LatencyDialog(e.getData(PlatformDataKeys.PROJECT), "Local Inspections Statistics",
+                                              LocalInspectionsStatistics.getInstance().dump()).show();
+  }
+}
@@ -36,6 +36,7 @@ import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.util.Processor;
 import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.Queue;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NonNls;
@@ -46,6 +47,9 @@ import org.jetbrains.annotations.TestOnly;
 import javax.swing.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DocumentCommitThread extends DocumentCommitProcessor implements Runnable, Disposable {
   private static final Logger LOG = Logger.getInstance("#com.intellij.psi.impl.DocumentCommitThread");
@@ -56,6 +60,7 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
   private CommitTask currentTask; // guarded by documentsToCommit
   private volatile boolean threadFinished;
   private volatile boolean myEnabled = true; // true if we can do commits. set to false temporarily during the write action.
+  private final Statistics myStatistics = new Statistics();
 
   public static DocumentCommitThread getInstance() {
     return ServiceManager.getService(DocumentCommitThread.class);
@@ -69,6 +74,9 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
   @Override
   public void dispose() {
     isDisposed = true;
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Commit statistics: " + myStatistics);
+    }
     synchronized (documentsToCommit) {
       documentsToCommit.clear();
     }
@@ -115,19 +123,23 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
   }
 
   public void queueCommit(@NotNull final Project project, @NotNull final Document document, @NonNls @NotNull Object reason) {
+    queueCommit(project, document, reason, System.nanoTime());
+  }
+
+  private void queueCommit(@NotNull Project project, @NotNull Document document, @NonNls @NotNull Object reason, long queuedNanos) {
     assert !isDisposed : "already disposed";
 
     if (!project.isInitialized()) return;
     PsiFile psiFile = PsiDocumentManager.getInstance(project).getCachedPsiFile(document);
     if (psiFile == null) return;
 
-    doQueue(project, document, reason);
+    doQueue(project, document, reason, queuedNanos);
   }
 
-  private void doQueue(Project project, Document document, Object reason) {
+  private void doQueue(Project project, Document document, Object reason, long queuedNanos) {
     synchronized (documentsToCommit) {
       ProgressIndicator indicator = new DaemonProgressIndicator();
-      CommitTask newTask = new CommitTask(document, project, indicator, reason);
+      CommitTask newTask = new CommitTask(document, project, indicator, reason, getEarliestQueuedNanos(document, project, queuedNanos));
 
       markRemovedFromDocsToCommit(newTask);
       markRemovedCurrentTask(newTask);
@@ -140,6 +152,19 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
     }
   }
 
+  // the document stays uncommitted since the pending task for it has been queued, so the latency is measured from there
+  private long getEarliestQueuedNanos(@NotNull Document document, @NotNull Project project, long queuedNanos) {
+    List<CommitTask> pending = new ArrayList<CommitTask>(documentsToApplyInEDT);
+    ContainerUtil.addIfNotNull(currentTask, pending);
+    ContainerUtil.addAll(pending, documentsToCommit.toList());
+    for (CommitTask task : pending) {
+      if (!task.removed && task.document == document && task.project == project) {
+        queuedNanos = Math.min(queuedNanos, task.queuedNanos);
+      }
+    }
+    return queuedNanos;
+  }
+
   private final StringBuilder log = new StringBuilder();
 
   @Override
@@ -250,6 +275,7 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
 
   private void pollQueue() {
     boolean success = false;
+    boolean interrupted = false;
     Document document = null;
     Project project = null;
     CommitTask task = null;
@@ -315,6 +341,7 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
       // app must be closing
       log("IE", task, false, e);
       cancel(e);
+      interrupted = true;
     }
     catch (Throwable e) {
       LOG.error(e);
@@ -323,7 +350,11 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
     synchronized (documentsToCommit) {
       if (!success && !task.removed) { // sync commit has not intervened
         // reset status for queue back successfully
-        doQueue(project, document, "re-added on failure");
+        (interrupted ? myStatistics.interrupted : myStatistics.restarted).incrementAndGet();
+        doQueue(project, document, "re-added on failure", task.queuedNanos);
+      }
+      else if (!success) {
+        myStatistics.discarded.incrementAndGet(); // the document has been changed or committed synchronously meanwhile
       }
       currentTask = null; // do not cancel, it's being invokeLatered
     }
@@ -362,11 +393,13 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
 
     log("About to commit sync", task, true, indicator);
 
+    long start = System.nanoTime();
     Runnable finish = commitUnderProgress(task, true);
     log("Committed sync", task, true, finish, indicator);
     assert finish != null;
 
     finish.run();
+    myStatistics.recordSynchronousCommit(System.nanoTime() - start);
 
     // let our thread know that queue must be polled again
     wakeUpQueue();
@@ -458,6 +491,7 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
           }
           if (!isValid) {
             log("Marked as already committed in EDT apply queue, return", task, true);
+            if (!synchronously) myStatistics.discarded.incrementAndGet();
             return;
           }
         }
@@ -474,14 +508,126 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
           assert !documentManager.isInUncommittedSet(document);
         }
         if (!success) {
-          // add document back to the queue
-          queueCommit(project, document, "Re-added back");
+          // document has been changed since the reparse started, add it back to the queue
+          myStatistics.discarded.incrementAndGet();
+          queueCommit(project, document, "Re-added back", task.queuedNanos);
+        }
+        else if (!synchronously) {
+          myStatistics.recordBackgroundCommit(System.nanoTime() - task.queuedNanos);
         }
       }
     };
     return finishRunnable;
   }
 
+  @NotNull
+  public Statistics getStatistics() {
+    return myStatistics;
+  }
+
+  /**
+   * Commit latency and discard counters, for diagnostics and performance tests.
+   * Background latency is measured from queueing the first commit of a still uncommitted document to applying its result in EDT,
+   * so it includes the commits restarted or discarded meanwhile.
+   */
+  public static class Statistics {
+    private final AtomicInteger backgroundCommits = new AtomicInteger();
+    private final AtomicLong backgroundLatencyNanos = new AtomicLong();
+    private final AtomicLong maxBackgroundLatencyNanos = new AtomicLong();
+    private final AtomicInteger synchronousCommits = new AtomicInteger();
+    private final AtomicLong synchronousDurationNanos = new AtomicLong();
+    private final AtomicInteger discarded = new AtomicInteger();
+    private final AtomicInteger restarted = new AtomicInteger();
+    private final AtomicInteger interrupted = new AtomicInteger();
+
+    private void recordBackgroundCommit(long latencyNanos) {
+      backgroundCommits.incrementAndGet();
+      backgroundLatencyNanos.addAndGet(latencyNanos);
+      while (true) {
+        long max = maxBackgroundLatencyNanos.get();
+        if (latencyNanos <= max || maxBackgroundLatencyNanos.compareAndSet(max, latencyNanos)) break;
+      }
+    }
+
+    private void recordSynchronousCommit(long durationNanos) {
+      synchronousCommits.incrementAndGet();
+      synchronousDurationNanos.addAndGet(durationNanos);
+    }
+
+    public int getBackgroundCommitCount() {
+      return backgroundCommits.get();
+    }
+
+    public long getAverageBackgroundLatencyMs() {
+      int count = backgroundCommits.get();
+      return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(backgroundLatencyNanos.get() / count);
+    }
+
+    public long getMaxBackgroundLatencyMs() {
+      return TimeUnit.NANOSECONDS.toMillis(maxBackgroundLatencyNanos.get());
+    }
+
+    public int getSynchronousCommitCount() {
+      return synchronousCommits.get();
+    }
+
+    public long getAverageSynchronousDurationMs() {
+      int count = synchronousCommits.get();
+      return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(synchronousDurationNanos.get() / count);
+    }
+
+    /**
+     * @return number of background commits whose results were thrown away because the document was changed again
+     * or a synchronous commit intervened
+     */
+    public int getDiscardedCount() {
+      return discarded.get();
+    }
+
+    /**
+     * @return number of background commits queued again because a write action cancelled them or they could not start a read action
+     */
+    public int getRestartedCount() {
+      return restarted.get();
+    }
+
+    /**
+     * @return number of background commits queued again because the commit thread was interrupted
+     */
+    public int getInterruptedCount() {
+      return interrupted.get();
+    }
+
+    public void reset() {
+      backgroundCommits.set(0);
+      backgroundLatencyNanos.set(0);
+      maxBackgroundLatencyNanos.set(0);
+      synchronousCommits.set(0);
+      synchronousDurationNanos.set(0);
+      discarded.set(0);
+      restarted.set(0);
+      interrupted.set(0);
+    }
+
+    /**
+     * @return the counters, one per line
+     */
+    @NonNls
+    @NotNull
+    public String dump() {
+      return toString().replace("; ", "\n");
+    }
+
+    @NonNls
+    @Override
+    public String toString() {
+      return "background commits: " + getBackgroundCommitCount() +
+             " (avg latency " + getAverageBackgroundLatencyMs() + "ms, max " + getMaxBackgroundLatencyMs() + "ms)" +
+             "; discarded: " + getDiscardedCount() + "; restarted: " + getRestartedCount() + "; interrupted: " + getInterruptedCount() +
+             "; synchronous commits: " + getSynchronousCommitCount() + " (avg " + getAverageSynchronousDurationMs() + "ms)";
+    }
+  }
+
   private boolean processAll(final Processor<CommitTask> processor) {
     final boolean[] result = {true};
     synchronized (documentsToCommit) {
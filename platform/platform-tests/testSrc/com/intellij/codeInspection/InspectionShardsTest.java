@@ -0,0 +1,105 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection;
+
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.LightVirtualFile;
+import junit.framework.TestCase;
+import org.jdom.Element;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InspectionShardsTest extends TestCase {
+  private File myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("shards", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testEveryFileIsInOneShard() {
+    int shardCount = 3;
+    int[] filesPerShard = new int[shardCount];
+    for (int i = 0; i < 300; i++) {
+      LightVirtualFile file = new LightVirtualFile("File" + i + ".java");
+      int shards = 0;
+      for (int shard = 0; shard < shardCount; shard++) {
+        if (InspectionShards.isInShard(file, shard, shardCount)) {
+          shards++;
+          filesPerShard[shard]++;
+        }
+      }
+      assertEquals(file.getPath(), 1, shards);
+    }
+    for (int count : filesPerShard) {
+      assertTrue(count > 0);
+    }
+  }
+
+  public void testEveryToolIsInOneShard() {
+    for (String shortName : new String[]{"UnusedDeclaration", "unused", "SameParameterValue"}) {
+      int shards = 0;
+      for (int shard = 0; shard < 2; shard++) {
+        if (InspectionShards.isToolInShard(shortName, shard, 2)) shards++;
+      }
+      assertEquals(shortName, 1, shards);
+    }
+  }
+
+  public void testMergeConcatenatesProblemsOfTool() throws Exception {
+    writeResult(0, "Tool.xml", "<problems><problem>a</problem><problem>b</problem></problems>");
+    writeResult(1, "Tool.xml", "<problems><problem>c</problem></problems>");
+    writeResult(1, "OtherTool.xml", "<problems><problem>d</problem></problems>");
+    String descriptions = "<inspections profile=\"Default\"/>";
+    writeResult(0, InspectionApplication.DESCRIPTIONS + InspectionApplication.XML_EXTENSION, descriptions);
+    writeResult(1, InspectionApplication.DESCRIPTIONS + InspectionApplication.XML_EXTENSION, descriptions);
+
+    File output = new File(myDir, "merged");
+    List<File> merged = InspectionShards.mergeShards(myDir.getPath(), output.getPath());
+
+    assertEquals(3, merged.size());
+    assertEquals(new File(output, "Tool.xml"), merged.get(merged.size() - 1));
+    assertEquals(3, getProblems(new File(output, "Tool.xml")).size());
+    assertEquals(1, getProblems(new File(output, "OtherTool.xml")).size());
+    assertEquals(descriptions, FileUtil.loadFile(new File(output, InspectionApplication.DESCRIPTIONS + InspectionApplication.XML_EXTENSION)));
+  }
+
+  public void testMergeOfNoShards() throws Exception {
+    assertTrue(InspectionShards.mergeShards(myDir.getPath(), myDir.getPath()).isEmpty());
+  }
+
+  private void writeResult(int shard, String name, String text) throws Exception {
+    FileUtil.writeToFile(new File(InspectionShards.getShardDirectory(myDir.getPath(), shard), name), text);
+  }
+
+  private static List<String> getProblems(File file) throws Exception {
+    List<String> problems = new ArrayList<String>();
+    for (Object problem : JDOMUtil.loadDocument(file).getRootElement().getChildren("problem")) {
+      problems.add(((Element)problem).getText());
+    }
+    return problems;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection;
+
+import com.intellij.util.SmartList;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the heap kept by the in/out reference lists of a synthetic reference graph with one million declarations,
+ * comparing the lists RefElementImpl used to keep (ArrayList(1) grown by add) with SmartList trimmed after the graph is built.
+ */
+public class ReferenceListsMemoryTest extends TestCase {
+  private static final int DECLARATIONS = 1000000;
+  private static final int TARGETS = 1000;
+
+  public void testTrimmedSmartListsKeepLessThanArrayLists() {
+    int[] sizes = generateSizes();
+    Object[] targets = new Object[TARGETS];
+    for (int i = 0; i < targets.length; i++) {
+      targets[i] = new Object();
+    }
+
+    long arrayLists = measure(new ListFactory() {
+      @Override
+      public List<Object> create(int size, Object[] targets) {
+        List<Object> list = new ArrayList<Object>(1);
+        fill(list, size, targets);
+        return list;
+      }
+    }, sizes, targets);
+    long smartLists = measure(new ListFactory() {
+      @Override
+      public List<Object> create(int size, Object[] targets) {
+        SmartList<Object> list = new SmartList<Object>();
+        fill(list, size, targets);
+        list.trimToSize();
+        return list;
+      }
+    }, sizes, targets);
+
+    System.out.println("Reference lists of " + DECLARATIONS + " declarations: ArrayList " + arrayLists / DECLARATIONS +
+                       " bytes per list, trimmed SmartList " + smartLists / DECLARATIONS + " bytes per list");
+    assertTrue("ArrayList: " + arrayLists + ", SmartList: " + smartLists, smartLists < arrayLists);
+  }
+
+  // half of the declarations are referenced once, 5% are referenced from 21 to 100 places, the rest from 2 to 20
+  private static int[] generateSizes() {
+    Random random = new Random(0);
+    int[] sizes = new int[DECLARATIONS];
+    for (int i = 0; i < sizes.length; i++) {
+      int bucket = random.nextInt(100);
+      sizes[i] = bucket < 50 ? 1 : bucket < 95 ? 2 + random.nextInt(19) : 21 + random.nextInt(80);
+    }
+    return sizes;
+  }
+
+  private static void fill(List<Object> list, int size, Object[] targets) {
+    for (int i = 0; i < size; i++) {
+      list.add(targets[i % targets.length]);
+    }
+  }
+
+  private static long measure(ListFactory factory, int[] sizes, Object[] targets) {
+    long before = usedMemory();
+    Object[] lists = new Object[sizes.length];
+    for (int i = 0; i < sizes.length; i++) {
+      lists[i] = factory.create(sizes[i], targets);
+    }
+    long after = usedMemory();
+    assertEquals(sizes.length, lists.length);
+    return after - before;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private interface ListFactory {
+    List<Object> create(int size, Object[] targets);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.find.ngrams;
+
+import junit.framework.TestCase;
+
+public class RegExpTrigramQueryTest extends TestCase {
+  public void testLiteral() {
+    assertQuery("'foo.bar'", "foo\\.bar");
+    assertQuery("'a\tb'", "a\\tb");
+    assertQuery("'x+y'", "\\Qx+y\\E");
+  }
+
+  public void testFragmentsSeparatedByUnknownCharacters() {
+    assertQuery("and('foo', 'bar')", "foo.bar");
+    assertQuery("and('foo', 'bar')", "foo[a-z]*bar");
+    assertQuery("and('foo', 'bar')", "^foo\\s+bar$");
+    assertQuery("and('foo', 'bar')", "foo(?=x)bar");
+  }
+
+  public void testQuantifiers() {
+    assertQuery("and('fo', 'bar')", "foo?bar");
+    assertQuery("and('foo', 'bar')", "foo+bar");
+    assertQuery("and('ab', 'c')", "ab{2,3}c");
+    assertQuery("'abc'", "ab{1}c");
+  }
+
+  public void testGroupsAndAlternatives() {
+    assertQuery("'foobar'", "foo(?:bar)");
+    assertQuery("or('foo', 'bar')", "foo|bar");
+    assertQuery("and('get', or('Name', 'Value'), '(')", "get(Name|Value)\\(");
+    assertQuery("'get'", "get(Name|Value)?");
+    assertQuery("*", "a|.*");
+  }
+
+  public void testCanFilter() {
+    assertTrue(RegExpTrigramQuery.parse("foo|bar").canFilter());
+    assertTrue(RegExpTrigramQuery.parse("a.b.foo").canFilter());
+    assertFalse(RegExpTrigramQuery.parse("ab|foo").canFilter());
+    assertFalse(RegExpTrigramQuery.parse("\\w+").canFilter());
+  }
+
+  public void testUnsupported() {
+    assertNull(RegExpTrigramQuery.parse("(?x)foo bar"));
+    assertNull(RegExpTrigramQuery.parse("foo)"));
+    assertNull(RegExpTrigramQuery.parse("(foo"));
+    assertNull(RegExpTrigramQuery.parse("*foo"));
+  }
+
+  private static void assertQuery(String expected, String regExp) {
+    RegExpTrigramQuery query = RegExpTrigramQuery.parse(regExp);
+    assertNotNull(regExp, query);
+    assertEquals(regExp, expected, query.toString());
+  }
+}
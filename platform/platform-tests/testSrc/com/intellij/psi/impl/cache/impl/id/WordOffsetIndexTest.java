@@ -0,0 +1,74 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.cache.impl.id;
+
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.testFramework.PlatformTestCase;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import com.intellij.util.indexing.FileContentImpl;
+import com.intellij.util.io.DataExternalizer;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Map;
+
+public class WordOffsetIndexTest extends LightPlatformCodeInsightFixtureTestCase {
+  public WordOffsetIndexTest() {
+    PlatformTestCase.initPlatformLangPrefix();
+  }
+
+  public void testWordBoundaries() {
+    Map<IdIndexEntry, int[]> map = index("foo a$foo foo1 1foo _foo\nfoo");
+    assertOffsets(map, "foo", 0, 6, 25);
+    assertOffsets(map, "a", 4);
+    assertOffsets(map, "foo1", 10);
+    assertOffsets(map, "1foo", 15);
+    assertOffsets(map, "_foo", 20);
+    assertNull(map.get(new IdIndexEntry("a$foo", true)));
+    assertNull(map.get(new IdIndexEntry("Foo", true)));
+  }
+
+  public void testIndexedWords() {
+    assertTrue(WordOffsetIndex.isIndexedWord("foo1") == WordOffsetIndex.isEnabled());
+    assertFalse(WordOffsetIndex.isIndexedWord("a$b"));
+    assertFalse(WordOffsetIndex.isIndexedWord("a.b"));
+    assertFalse(WordOffsetIndex.isIndexedWord(""));
+  }
+
+  public void testExternalizerRoundTrip() throws IOException {
+    DataExternalizer<int[]> externalizer = new WordOffsetIndex().getValueExternalizer();
+    for (int[] value : new int[][]{{}, {0}, {5, 6, 7}, {1, 127, 128, 16384, 1 << 21, Integer.MAX_VALUE}}) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      externalizer.save(out, value);
+      out.close();
+      int[] read = externalizer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+      assertTrue(Arrays.toString(read), Arrays.equals(value, read));
+    }
+  }
+
+  private static Map<IdIndexEntry, int[]> index(String text) {
+    LightVirtualFile file = new LightVirtualFile("a.txt", text);
+    return new WordOffsetIndex().getIndexer().map(new FileContentImpl(file, text, CharsetToolkit.UTF8_CHARSET));
+  }
+
+  private static void assertOffsets(Map<IdIndexEntry, int[]> map, String word, int... expected) {
+    int[] offsets = map.get(new IdIndexEntry(word, true));
+    assertNotNull(word, offsets);
+    assertTrue(word + ": " + Arrays.toString(offsets), Arrays.equals(expected, offsets));
+  }
+}
@@ -551,6 +551,18 @@ public class NameUtilMatchingTest extends UsefulTestCase {
     assertTrue(new MinusculeMatcher(" EUC-", NameUtil.MatchingCaseSensitivity.FIRST_LETTER).matchingDegree("x-EUC-TW") > Integer.MIN_VALUE);
   }
 
+  public void testMatchesAgreesWithFragments() {
+    for (String pattern : ContainerUtil.ar("*", "a", "ITW", "itw", "getN", "*oo*", " path", "*.ico", "AB CD", "get()")) {
+      MinusculeMatcher matcher = new MinusculeMatcher(pattern, NameUtil.MatchingCaseSensitivity.NONE)
+      for (String name : ContainerUtil.ar("IntelliJTestWrapper", "getName", "foo.ico", "a.i.c.o", "getAbsolutePath", "ABxCDy", "get()")) {
+        def fragments = matcher.matchingFragments(name)
+        assertEquals(pattern + " " + name, fragments != null, matcher.matches(name))
+        assertEquals(pattern + " " + name, matcher.matchingDegree(name), matcher.matchingDegree(name, fragments))
+        assertEquals(pattern + " " + name, matcher.isStartMatch(name), MinusculeMatcher.isStartMatch(fragments))
+      }
+    }
+  }
+
   private static void assertPreference(@NonNls String pattern,
                                        @NonNls String less,
                                        @NonNls String more) {
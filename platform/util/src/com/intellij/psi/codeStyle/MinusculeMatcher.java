@@ -128,7 +128,10 @@ public class MinusculeMatcher implements Matcher {
     return false;
   }
 
-  private static FList<TextRange> prependRange(@NotNull FList<TextRange> ranges, int from, int length) {
+  private static FList<TextRange> prependRange(@NotNull FList<TextRange> ranges, int from, int length, MatchingState matchingState) {
+    if (!matchingState.myRangesNeeded) {
+      return ranges;
+    }
     TextRange head = ranges.getHead();
     if (head != null && head.getStartOffset() == from + length) {
       return ranges.getTail().prepend(new TextRange(from, head.getEndOffset()));
@@ -137,7 +140,13 @@ public class MinusculeMatcher implements Matcher {
   }
 
   public int matchingDegree(@NotNull String name) {
-    FList<TextRange> iterable = matchingFragments(name);
+    return matchingDegree(name, matchingFragments(name));
+  }
+
+  /**
+   * @param iterable the result of {@link #matchingFragments(String)} for the name, to avoid matching it again
+   */
+  public int matchingDegree(@NotNull String name, @Nullable FList<TextRange> iterable) {
     if (iterable == null) return Integer.MIN_VALUE;
     if (iterable.isEmpty()) return 0;
 
@@ -189,7 +198,10 @@ public class MinusculeMatcher implements Matcher {
   }
 
   public boolean isStartMatch(@NotNull String name) {
-    Iterable<TextRange> fragments = matchingFragments(name);
+    return isStartMatch(matchingFragments(name));
+  }
+
+  public static boolean isStartMatch(@Nullable Iterable<TextRange> fragments) {
     if (fragments != null) {
       Iterator<TextRange> iterator = fragments.iterator();
       if (!iterator.hasNext() || iterator.next().getStartOffset() == 0) {
@@ -204,13 +216,22 @@ public class MinusculeMatcher implements Matcher {
     // optimisation: name too short for this pattern
     if (!myHasWildCards && name.length() < myPattern.length) return false;
 
-    return matchingFragments(name) != null;
+    MatchingState state = myMatchingState.get();
+    state.initializeState(name, false);
+    try {
+      return matchWildcards(name, 0, 0, state) != null;
+    }
+    finally {
+      state.releaseState();
+    }
   }
 
   @Nullable
   public FList<TextRange> matchingFragments(@NotNull String name) {
+    if (!myHasWildCards && name.length() < myPattern.length) return null;
+
     MatchingState state = myMatchingState.get();
-    state.initializeState(name);
+    state.initializeState(name, true);
     try {
       return matchWildcards(name, 0, 0, state);
     }
@@ -248,7 +269,7 @@ public class MinusculeMatcher implements Matcher {
       if (space && nameIndex != name.length() && (patternIndex < 2 || !NameUtil.isWordStart(myPattern[patternIndex - 2]))) {
         int spaceIndex = name.indexOf(' ', nameIndex);
         if (spaceIndex >= 0) {
-          return FList.<TextRange>emptyList().prepend(TextRange.from(spaceIndex, 1));
+          return singleRange(spaceIndex, 1, matchingState);
         }
         return null;
       }
@@ -303,6 +324,12 @@ public class MinusculeMatcher implements Matcher {
     }
   }
 
+  @NotNull
+  private static FList<TextRange> singleRange(int from, int length, MatchingState matchingState) {
+    FList<TextRange> empty = FList.emptyList();
+    return matchingState.myRangesNeeded ? empty.prepend(TextRange.from(from, length)) : empty;
+  }
+
   private boolean charEquals(char patternChar, int patternIndex, char c, boolean isIgnoreCase) {
     return patternChar == c ||
            isIgnoreCase && (toLowerCase[patternIndex] == c || toUpperCase[patternIndex] == c);
@@ -354,7 +381,7 @@ public class MinusculeMatcher implements Matcher {
           int nextWordStart = indexOfWordStart(name, patternIndex + i, nameIndex + i);
           FList<TextRange> ranges = matchWildcards(name, patternIndex + i, nextWordStart, matchingState);
           if (ranges != null) {
-            return prependRange(ranges, nameIndex, i);
+            return prependRange(ranges, nameIndex, i, matchingState);
           }
           // at least three consecutive uppercase letters shouldn't match lowercase
           if (myHasHumps && i > 1 && isUpperCase[patternIndex + i - 1] && isUpperCase[patternIndex + i - 2]) {
@@ -372,7 +399,7 @@ public class MinusculeMatcher implements Matcher {
     // we've found the longest fragment matching pattern and name
 
     if (patternIndex + i >= myPattern.length) {
-      return FList.<TextRange>emptyList().prepend(TextRange.from(nameIndex, i));
+      return singleRange(nameIndex, i, matchingState);
     }
 
     // try to match the remainder of pattern with the remainder of name
@@ -382,7 +409,7 @@ public class MinusculeMatcher implements Matcher {
                                 matchWildcards(name, patternIndex + i, nameIndex + i, matchingState) :
                                 matchSkippingWords(name, patternIndex + i, nameIndex + i, false, matchingState);
       if (ranges != null) {
-        return prependRange(ranges, nameIndex, i);
+        return prependRange(ranges, nameIndex, i, matchingState);
       }
       i--;
     }
@@ -459,13 +486,16 @@ public class MinusculeMatcher implements Matcher {
 
   private static class MatchingState {
     private boolean myBusy;
+    // when only the fact of a match is needed, no ranges are allocated and an empty list stands for any match
+    private boolean myRangesNeeded;
     private int myNameLength;
     private boolean isAsciiName;
     private final BitSet myTable = new BitSet();
 
-    void initializeState(String name) {
+    void initializeState(String name, boolean rangesNeeded) {
       assert !myBusy;
       myBusy = true;
+      myRangesNeeded = rangesNeeded;
       myNameLength = name.length();
       isAsciiName = IOUtil.isAscii(name);
       myTable.clear();
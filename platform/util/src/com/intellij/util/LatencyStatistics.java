@@ -0,0 +1,124 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util;
+
+import com.intellij.util.containers.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.TestOnly;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The last {@link #MAX_SAMPLES} latencies in milliseconds for each of a set of named activities,
+ * summarized by {@link #getPercentile(String, double)} and {@link #dump()}. Thread-safe.
+ */
+public class LatencyStatistics {
+  private static final int MAX_SAMPLES = 1000;
+  private static final double[] DUMPED_PERCENTILES = {0.5, 0.9, 0.99};
+
+  private final String myNameColumn;
+  private final ConcurrentHashMap<String, Samples> mySamples = new ConcurrentHashMap<String, Samples>();
+
+  /**
+   * @param nameColumn the header of the name column in {@link #dump()}
+   */
+  public LatencyStatistics(@NotNull String nameColumn) {
+    myNameColumn = nameColumn;
+  }
+
+  public void addSample(@NotNull String name, long millis) {
+    Samples samples = mySamples.get(name);
+    if (samples == null) {
+      samples = mySamples.cacheOrGet(name, new Samples());
+    }
+    samples.add(millis);
+  }
+
+  @NotNull
+  public List<String> getNames() {
+    List<String> result = new ArrayList<String>(mySamples.keySet());
+    Collections.sort(result);
+    return result;
+  }
+
+  public int getSampleCount(@NotNull String name) {
+    Samples samples = mySamples.get(name);
+    return samples == null ? 0 : samples.size();
+  }
+
+  /**
+   * @param fraction the percentile as a fraction between 0 and 1, e.g. 0.9 for the 90th percentile
+   * @return the latency in milliseconds which is not exceeded by the given fraction of the recent samples,
+   *         or -1 if nothing has been recorded under the name yet
+   */
+  public long getPercentile(@NotNull String name, double fraction) {
+    Samples samples = mySamples.get(name);
+    long[] sorted = samples == null ? null : samples.getSorted();
+    if (sorted == null || sorted.length == 0) return -1;
+    int index = (int)Math.ceil(fraction * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+  }
+
+  /**
+   * @return tab-separated table with one name per line
+   */
+  @NotNull
+  public String dump() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(myNameColumn).append("\tsamples");
+    for (double percentile : DUMPED_PERCENTILES) {
+      builder.append("\tp").append((int)(percentile * 100)).append(" (ms)");
+    }
+    builder.append('\n');
+    for (String name : getNames()) {
+      builder.append(name).append('\t').append(getSampleCount(name));
+      for (double percentile : DUMPED_PERCENTILES) {
+        builder.append('\t').append(getPercentile(name, percentile));
+      }
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+
+  @TestOnly
+  public void clear() {
+    mySamples.clear();
+  }
+
+  private static class Samples {
+    private final long[] myMillis = new long[MAX_SAMPLES];
+    private long myCount;
+
+    private synchronized void add(long millis) {
+      myMillis[(int)(myCount % MAX_SAMPLES)] = millis;
+      myCount++;
+    }
+
+    private synchronized int size() {
+      return (int)Math.min(myCount, MAX_SAMPLES);
+    }
+
+    @NotNull
+    private synchronized long[] getSorted() {
+      long[] result = Arrays.copyOf(myMillis, size());
+      Arrays.sort(result);
+      return result;
+    }
+  }
+}
@@ -34,23 +34,41 @@ public class DiffTree<OT, NT> {
   private final DiffTreeChangeBuilder<OT, NT> myConsumer;
   private final List<Ref<OT[]>> myOldChildrenLists = new ArrayList<Ref<OT[]>>();
   private final List<Ref<NT[]>> myNewChildrenLists = new ArrayList<Ref<NT[]>>();
+  private int myNodeBudget;
 
   private DiffTree(final FlyweightCapableTreeStructure<OT> oldTree,
                    final FlyweightCapableTreeStructure<NT> newTree,
                    final ShallowNodeComparator<OT, NT> comparator,
-                   final DiffTreeChangeBuilder<OT, NT> consumer) {
+                   final DiffTreeChangeBuilder<OT, NT> consumer,
+                   final int nodeBudget) {
 
     myOldTree = oldTree;
     myNewTree = newTree;
     myComparator = comparator;
     myConsumer = consumer;
+    myNodeBudget = nodeBudget;
   }
 
   public static <OT, NT> void diff(final FlyweightCapableTreeStructure<OT> oldTree,
                                    final FlyweightCapableTreeStructure<NT> newTree,
                                    final ShallowNodeComparator<OT, NT> comparator,
                                    final DiffTreeChangeBuilder<OT, NT> consumer) {
-    new DiffTree<OT, NT>(oldTree, newTree, comparator, consumer).build(oldTree.getRoot(), newTree.getRoot(), 0);
+    diff(oldTree, newTree, comparator, consumer, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Same as {@link #diff(FlyweightCapableTreeStructure, FlyweightCapableTreeStructure, ShallowNodeComparator, DiffTreeChangeBuilder)}
+   * but compares the children of at most about {@code nodeBudget} nodes known to be changed, i.e. with different hash codes.
+   * Once the budget is spent, such changed composite nodes are reported as replaced as a whole, which is always correct,
+   * just less precise. Nodes with equal hash codes are still compared child by child, so that unchanged subtrees are not
+   * replaced (the hash codes are too weak to skip them as equal).
+   */
+  public static <OT, NT> void diff(final FlyweightCapableTreeStructure<OT> oldTree,
+                                   final FlyweightCapableTreeStructure<NT> newTree,
+                                   final ShallowNodeComparator<OT, NT> comparator,
+                                   final DiffTreeChangeBuilder<OT, NT> consumer,
+                                   final int nodeBudget) {
+    new DiffTree<OT, NT>(oldTree, newTree, comparator, consumer, nodeBudget).build(oldTree.getRoot(), newTree.getRoot(), 0, true);
   }
 
   private static enum CompareResult {
@@ -60,7 +78,7 @@ public class DiffTree<OT, NT> {
     NOT_EQUAL, // 100% different
   }
 
-  private void build(OT oldN, NT newN, int level) {
+  private void build(OT oldN, NT newN, int level, boolean changed) {
     OT oldNode = myOldTree.prepareForGetChildren(oldN);
     NT newNode = myNewTree.prepareForGetChildren(newN);
 
@@ -76,6 +94,9 @@ public class DiffTree<OT, NT> {
     final Ref<NT[]> newChildrenR = myNewChildrenLists.get(level);
     int newSize = myNewTree.getChildren(newNode, newChildrenR);
     final NT[] newChildren = newChildrenR.get();
+    if (changed) {
+      myNodeBudget -= oldSize + newSize;
+    }
 
     compareLevel(level, oldNode, oldSize, oldChildren, newNode, newSize, newChildren);
     disposeLevel(oldChildren, oldSize, newChildren, newSize);
@@ -105,7 +126,7 @@ public class DiffTree<OT, NT> {
         break;
       }
       if (c11 == CompareResult.DRILL_DOWN_NEEDED) {
-        build(oldChild1, newChild1, level + 1);
+        drillDown(oldChild1, newChild1, level);
       }
       oldSize--;
       newSize--;
@@ -122,7 +143,7 @@ public class DiffTree<OT, NT> {
       CompareResult c11 = looksEqual(comparator, oldChild1, newChild1);
       if (c11 == CompareResult.EQUAL || c11 == CompareResult.DRILL_DOWN_NEEDED) {
         if (c11 == CompareResult.DRILL_DOWN_NEEDED) {
-          build(oldChild1, newChild1, level+1);
+          drillDown(oldChild1, newChild1, level);
         }
         oldIndex++;
         newIndex++;
@@ -176,6 +197,15 @@ public class DiffTree<OT, NT> {
     }
   }
 
+  private void drillDown(OT oldChild, NT newChild, int level) {
+    boolean changed = !myComparator.hashCodesEqual(oldChild, newChild);
+    if (changed && myNodeBudget <= 0) {
+      myConsumer.nodeReplaced(oldChild, newChild);
+      return;
+    }
+    build(oldChild, newChild, level + 1, changed);
+  }
+
   private CompareResult looksEqual(ShallowNodeComparator<OT, NT> comparator, OT oldChild1, NT newChild1) {
     if (oldChild1 == null || newChild1 == null) {
       return oldChild1 == newChild1 ? CompareResult.EQUAL : CompareResult.NOT_EQUAL;
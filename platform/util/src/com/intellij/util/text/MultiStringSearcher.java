@@ -0,0 +1,203 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.text;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ArrayUtil;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the occurrences of several patterns in one pass over the text (Aho-Corasick automaton).
+ * The patterns are given as forward {@link StringSearcher}s and are matched with the same case sensitivity;
+ * the automaton works on lower-cased text if at least one of the searchers is case-insensitive, and the occurrences of
+ * case-sensitive patterns are verified against the original text then.
+ */
+public class MultiStringSearcher {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.util.text.MultiStringSearcher");
+
+  private final StringSearcher[] mySearchers;
+  private final char[][] myPatterns;
+  private final boolean myLowerCaseText;
+
+  // trie nodes; node 0 is the root
+  private char[][] myKeys = new char[16][];
+  private int[][] myTargets = new int[16][];
+  private int[] myFailures = new int[16];
+  private int[][] myOutputs = new int[16][];
+  private int myNodeCount = 1;
+
+  public MultiStringSearcher(@NotNull List<StringSearcher> searchers) {
+    mySearchers = searchers.toArray(new StringSearcher[searchers.size()]);
+    myPatterns = new char[mySearchers.length][];
+    boolean lowerCaseText = false;
+    for (StringSearcher searcher : mySearchers) {
+      LOG.assertTrue(searcher.isForwardDirection(), searcher.getPattern());
+      lowerCaseText |= !searcher.isCaseSensitive();
+    }
+    myLowerCaseText = lowerCaseText;
+
+    for (int i = 0; i < mySearchers.length; i++) {
+      StringSearcher searcher = mySearchers[i];
+      char[] pattern = searcher.isCaseSensitive() ? searcher.getPattern().toCharArray() : searcher.getPattern().toLowerCase().toCharArray();
+      myPatterns[i] = pattern;
+      int node = 0;
+      for (char c : pattern) {
+        char key = myLowerCaseText ? StringUtil.toLowerCase(c) : c;
+        int next = findTarget(node, key);
+        if (next < 0) {
+          next = addNode();
+          addTarget(node, key, next);
+        }
+        node = next;
+      }
+      myOutputs[node] = myOutputs[node] == null ? new int[]{i} : ArrayUtil.append(myOutputs[node], i);
+    }
+    buildFailureLinks();
+  }
+
+  @NotNull
+  public List<StringSearcher> getSearchers() {
+    return Arrays.asList(mySearchers);
+  }
+
+  /**
+   * @return for every searcher, the ascending start offsets of its occurrences which lie completely inside the range,
+   *         overlapping occurrences included
+   */
+  @NotNull
+  public TIntArrayList[] findOccurrences(@NotNull CharSequence text, @Nullable char[] textArray, int start, int end) {
+    LOG.assertTrue(start <= end, start - end);
+    LOG.assertTrue(end <= text.length(), text.length() - end);
+    TIntArrayList[] result = new TIntArrayList[mySearchers.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new TIntArrayList();
+    }
+    int node = 0;
+    for (int offset = start; offset < end; offset++) {
+      char c = textArray != null ? textArray[offset] : text.charAt(offset);
+      if (myLowerCaseText) {
+        c = StringUtil.toLowerCase(c);
+      }
+      int next;
+      while ((next = findTarget(node, c)) < 0 && node != 0) {
+        node = myFailures[node];
+      }
+      node = Math.max(next, 0);
+      int[] outputs = myOutputs[node];
+      if (outputs == null) continue;
+      for (int index : outputs) {
+        int occurrence = offset - myPatterns[index].length + 1;
+        if (myLowerCaseText && mySearchers[index].isCaseSensitive() && !matchesExactly(text, textArray, occurrence, myPatterns[index])) {
+          continue;
+        }
+        result[index].add(occurrence);
+      }
+    }
+    return result;
+  }
+
+  private static boolean matchesExactly(@NotNull CharSequence text, @Nullable char[] textArray, int start, @NotNull char[] pattern) {
+    for (int i = 0; i < pattern.length; i++) {
+      char c = textArray != null ? textArray[start + i] : text.charAt(start + i);
+      if (c != pattern[i]) return false;
+    }
+    return true;
+  }
+
+  private void buildFailureLinks() {
+    int[] queue = new int[myNodeCount];
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = 0;
+    while (head < tail) {
+      int node = queue[head++];
+      char[] keys = myKeys[node];
+      if (keys == null) continue;
+      int[] targets = myTargets[node];
+      for (int i = 0; i < keys.length; i++) {
+        int child = targets[i];
+        queue[tail++] = child;
+        if (node == 0) continue;
+        int failure = myFailures[node];
+        int next;
+        while ((next = findTarget(failure, keys[i])) < 0 && failure != 0) {
+          failure = myFailures[failure];
+        }
+        failure = Math.max(next, 0);
+        myFailures[child] = failure;
+        int[] inherited = myOutputs[failure];
+        if (inherited != null) {
+          myOutputs[child] = myOutputs[child] == null ? inherited : ArrayUtil.mergeArrays(myOutputs[child], inherited);
+        }
+      }
+    }
+  }
+
+  private int findTarget(int node, char c) {
+    char[] keys = myKeys[node];
+    if (keys == null) return -1;
+    int index = Arrays.binarySearch(keys, c);
+    return index < 0 ? -1 : myTargets[node][index];
+  }
+
+  private void addTarget(int node, char c, int target) {
+    char[] keys = myKeys[node];
+    int[] targets = myTargets[node];
+    if (keys == null) {
+      myKeys[node] = new char[]{c};
+      myTargets[node] = new int[]{target};
+      return;
+    }
+    int index = -Arrays.binarySearch(keys, c) - 1;
+    char[] newKeys = new char[keys.length + 1];
+    int[] newTargets = new int[targets.length + 1];
+    System.arraycopy(keys, 0, newKeys, 0, index);
+    System.arraycopy(targets, 0, newTargets, 0, index);
+    newKeys[index] = c;
+    newTargets[index] = target;
+    System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+    System.arraycopy(targets, index, newTargets, index + 1, targets.length - index);
+    myKeys[node] = newKeys;
+    myTargets[node] = newTargets;
+  }
+
+  private int addNode() {
+    if (myNodeCount == myFailures.length) {
+      int capacity = myNodeCount * 2;
+      myKeys = Arrays.copyOf(myKeys, capacity);
+      myTargets = Arrays.copyOf(myTargets, capacity);
+      myFailures = Arrays.copyOf(myFailures, capacity);
+      myOutputs = Arrays.copyOf(myOutputs, capacity);
+    }
+    return myNodeCount++;
+  }
+
+  @Override
+  public String toString() {
+    List<String> patterns = new ArrayList<String>(mySearchers.length);
+    for (StringSearcher searcher : mySearchers) {
+      patterns.add(searcher.getPattern());
+    }
+    return patterns.toString();
+  }
+}
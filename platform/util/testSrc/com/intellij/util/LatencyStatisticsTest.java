@@ -0,0 +1,51 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class LatencyStatisticsTest extends TestCase {
+  public void testPercentiles() {
+    LatencyStatistics statistics = new LatencyStatistics("activity");
+    for (int i = 1; i <= 100; i++) {
+      statistics.addSample("a", 101 - i);
+    }
+    statistics.addSample("b", 7);
+
+    assertEquals(Arrays.asList("a", "b"), statistics.getNames());
+    assertEquals(100, statistics.getSampleCount("a"));
+    assertEquals(50, statistics.getPercentile("a", 0.5));
+    assertEquals(90, statistics.getPercentile("a", 0.9));
+    assertEquals(100, statistics.getPercentile("a", 1));
+    assertEquals(1, statistics.getPercentile("a", 0));
+    assertEquals(7, statistics.getPercentile("b", 0.99));
+    assertEquals(-1, statistics.getPercentile("c", 0.5));
+    assertEquals("activity\tsamples\tp50 (ms)\tp90 (ms)\tp99 (ms)\n" +
+                 "a\t100\t50\t90\t99\n" +
+                 "b\t1\t7\t7\t7\n", statistics.dump());
+  }
+
+  public void testOnlyRecentSamplesAreKept() {
+    LatencyStatistics statistics = new LatencyStatistics("activity");
+    for (int i = 0; i < 1500; i++) {
+      statistics.addSample("a", i < 500 ? 1000 : 1);
+    }
+    assertEquals(1000, statistics.getSampleCount("a"));
+    assertEquals(1, statistics.getPercentile("a", 1));
+  }
+}
@@ -216,9 +216,21 @@ public class DiffTreeTest extends TestCase {
     performTest(r1, r2, "REPLACED: 22 to 250");
   }
 
+  public void testChangedSubtreeReplacedWhenNodeBudgetIsSpent() throws Exception {
+    Node r1 = new Node(0, new Node(1, new Node(21), new Node(22, new Node(221)), new Node(23)), new Node(3, new Node(31)));
+    Node r2 = new Node(0, new Node(1, new Node(21), new Node(22, new Node(221), new Node(222)), new Node(23)), new Node(3, new Node(31)));
+
+    performTest(r1, r2, 2, "REPLACED: 22 to 22");
+    performTest(r1, r2, Integer.MAX_VALUE, "INSERTED to 22: 222 at 1");
+  }
+
   private static void performTest(final Node r1, final Node r2, final String... expected) {
+    performTest(r1, r2, Integer.MAX_VALUE, expected);
+  }
+
+  private static void performTest(final Node r1, final Node r2, int nodeBudget, final String... expected) {
     final DiffBuilder result = new DiffBuilder();
-    DiffTree.diff(new TreeStructure(r1), new TreeStructure(r2), new NodeComparator(), result);
+    DiffTree.diff(new TreeStructure(r1), new TreeStructure(r2), new NodeComparator(), result, nodeBudget);
 
     final List<String> expectedList = Arrays.asList(expected);
     final List<String> actual = result.getEvents();
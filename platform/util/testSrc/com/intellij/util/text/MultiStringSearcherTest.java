@@ -0,0 +1,78 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.text;
+
+import gnu.trove.TIntArrayList;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class MultiStringSearcherTest extends TestCase {
+  public void testOverlappingPatterns() {
+    String text = "ushers";
+    MultiStringSearcher searcher = new MultiStringSearcher(Arrays.asList(new StringSearcher("he", true, true),
+                                                                         new StringSearcher("she", true, true),
+                                                                         new StringSearcher("hers", true, true),
+                                                                         new StringSearcher("his", true, true)));
+    TIntArrayList[] occurrences = searcher.findOccurrences(text, null, 0, text.length());
+    assertEquals(new TIntArrayList(new int[]{2}), occurrences[0]);
+    assertEquals(new TIntArrayList(new int[]{1}), occurrences[1]);
+    assertEquals(new TIntArrayList(new int[]{2}), occurrences[2]);
+    assertTrue(occurrences[3].isEmpty());
+  }
+
+  public void testMixedCaseSensitivity() {
+    String text = "Foo foo FOO";
+    MultiStringSearcher searcher = new MultiStringSearcher(Arrays.asList(new StringSearcher("foo", true, true),
+                                                                         new StringSearcher("foo", false, true)));
+    TIntArrayList[] occurrences = searcher.findOccurrences(text, text.toCharArray(), 0, text.length());
+    assertEquals(new TIntArrayList(new int[]{4}), occurrences[0]);
+    assertEquals(new TIntArrayList(new int[]{0, 4, 8}), occurrences[1]);
+  }
+
+  public void testSameOccurrencesAsSingleSearchers() {
+    Random random = new Random(42);
+    for (int attempt = 0; attempt < 100; attempt++) {
+      String text = randomString(random, 200);
+      List<StringSearcher> searchers = new ArrayList<StringSearcher>();
+      for (int i = 0; i < 5; i++) {
+        searchers.add(new StringSearcher(randomString(random, 1 + random.nextInt(3)), random.nextBoolean(), true));
+      }
+      int start = random.nextInt(20);
+      int end = text.length() - random.nextInt(20);
+      TIntArrayList[] occurrences = new MultiStringSearcher(searchers).findOccurrences(text, null, start, end);
+      for (int i = 0; i < searchers.size(); i++) {
+        StringSearcher searcher = searchers.get(i);
+        TIntArrayList expected = new TIntArrayList();
+        for (int index = searcher.scan(text, start, end); index >= 0; index = searcher.scan(text, index + 1, end)) {
+          expected.add(index);
+        }
+        assertEquals(text + " " + searcher.getPattern(), expected, occurrences[i]);
+      }
+    }
+  }
+
+  private static String randomString(Random random, int length) {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      builder.append("aAbB".charAt(random.nextInt(4)));
+    }
+    return builder.toString();
+  }
+}